@@ -7,6 +7,7 @@ import cute.concolic.concurrency.RacePair;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Author: Koushik Sen <ksen@cs.uiuc.edu>
@@ -52,6 +53,18 @@ public class Call {
         if((Globals.globals.information.debugLevel&1)!=0) Globals.globals.logger.info(1,"Begin "+msg,null);
     }
 
+    /**
+     * Like the other printDebugAfter, but o is only given an id if the id
+     * is printed, since ObjectIds.id remembers every object it is given.
+     */
+    public static void printDebugAfter(String msg,Object o,boolean concurrent,String cMsg){
+        if(concurrent && (Globals.globals.information.debugLevel&2)!=0){
+            printDebugAfter(msg,(double)ObjectIds.id(o),concurrent,cMsg);
+        } else {
+            printDebugAfter(msg,-1,concurrent,cMsg);
+        }
+    }
+
     public static void printDebugAfter(String msg,double id,boolean concurrent,String cMsg){
         if((Globals.globals.information.debugLevel&1)!=0)  Globals.globals.logger.info(1,"End "+msg,null);
         if(concurrent){
@@ -68,6 +81,21 @@ public class Call {
         }
     }
 
+    /**
+     * In concrete mode (-c) only branch coverage is recorded, so the
+     * symbolic instrumentation functions return right away. The check is
+     * made once, by the function that reaches the symbolic state; the
+     * overloads that only convert their argument rely on the function they
+     * call. The calls are still inserted at instrumentation time, since the
+     * same instrumented classes are run concretely and concolically.
+     */
+    private static boolean isConcreteOnly(){
+        if(!Globals.globals.initialized) {
+            Globals.globals.begin();
+        }
+        return Globals.globals.information.concreteOnly;
+    }
+
     public static int getLockDepth(Object l){
         int ldepth = Globals.globals.sched.getLockDepth(l);
         return ldepth;
@@ -79,40 +107,46 @@ public class Call {
     }
 
     public static void popStore(int f,int s,int lineno){
+        if(isConcreteOnly()) return;
         printDebugBefore("popStore 2");
         Globals.globals.cstack.pop(id(f,s));
         printDebugAfter("popStore 2",id(f,s),false,"");
     }
 
     public static void popStore(Object o,int s,int lineno){
+        if(isConcreteOnly()) return;
         printDebugBefore("popStore 3");
-        int f = System.identityHashCode(o);
+        int f = ObjectIds.id(o);
         Globals.globals.cstack.pop(id(f,s));
         printDebugAfter("popStore 3",id(f,s),false,"");
     }
 
     public static void storeReturn(int f,int s,int lineno){
+        if(isConcreteOnly()) return;
         printDebugBefore("storeReturn 2");
         Globals.globals.cstack.storeReturn(id(f,s));
         printDebugAfter("storeReturn 2",id(f,s),false,"");
     }
 
     public static void storeReturn(Object o,int s,int lineno){
+        if(isConcreteOnly()) return;
         printDebugBefore("storeReturn 3");
-        int f = System.identityHashCode(o);
+        int f = ObjectIds.id(o);
         Globals.globals.cstack.storeReturn(id(f,s));
         printDebugAfter("storeReturn 3",id(f,s),false,"");
     }
 
     public static void store(int f,int s,int lineno){
+        if(isConcreteOnly()) return;
         printDebugBefore("store 1");
         Globals.globals.cstack.store(id(f,s));
         printDebugAfter("store 1",id(f,s),false,"");
     }
 
     public static void store(Object o,int s,int lineno){
+        if(isConcreteOnly()) return;
         printDebugBefore("store 2");
-        int f = System.identityHashCode(o);
+        int f = ObjectIds.id(o);
         Globals.globals.cstack.store(id(f,s));
         Globals.globals.ptrace.printLineNumber(lineno);
         printDebugAfter("store 2",id(f,s),false,"");
@@ -120,52 +154,60 @@ public class Call {
 
 
     public static void loadAddress(int f,int s,int lineno){
+        if(isConcreteOnly()) return;
         printDebugBefore("loadAddress 1");
         Globals.globals.cstack.loadAddress(id(f,s));
         printDebugAfter("loadAddress 1",id(f,s),false,"");
     }
 
     public static void loadAddress(Object o,int s,int lineno){
+        if(isConcreteOnly()) return;
         printDebugBefore("loadAddress 2");
 
-        int f = System.identityHashCode(o);
+        int f = ObjectIds.id(o);
         Globals.globals.cstack.loadAddress(id(f,s));
         printDebugAfter("loadAddress 2",id(f,s),false,"");
     }
 
     public static void pushArg(Object o,int s,int lineno){
+        if(isConcreteOnly()) return;
         printDebugBefore("pushArg 1");
-        int f = System.identityHashCode(o);
+        int f = ObjectIds.id(o);
         Globals.globals.cstack.push(id(f,s));
         printDebugAfter("pushArg 1",id(f,s),false,"");
     }
 
     public static void pushArg(int f,int s,int lineno){
+        if(isConcreteOnly()) return;
         printDebugBefore("pushArg 2");
         Globals.globals.cstack.push(id(f,s));
         printDebugAfter("pushArg 2",id(f,s),false,"");
     }
 
     public static void setReturn(Object o,int s,int lineno){
+        if(isConcreteOnly()) return;
         printDebugBefore("setReturn 1");
-        int f = System.identityHashCode(o);
+        int f = ObjectIds.id(o);
         Globals.globals.cstack.setReturn(id(f,s));
         printDebugAfter("setReturn 1",id(f,s),false,"");
     }
 
     public static void setReturn(int f,int s,int lineno){
+        if(isConcreteOnly()) return;
         printDebugBefore("setReturn 2");
         Globals.globals.cstack.setReturn(id(f,s));
         printDebugAfter("setReturn 2",id(f,s),false,"");
     }
 
     public static void popAll(int lineno){
+        if(isConcreteOnly()) return;
         printDebugBefore("popAll 1");
         Globals.globals.cstack.popAll();
         printDebugAfter("popAll 1",-1,false,"");
     }
 
     public static void funBegin(String fname,int lineno){
+        if(isConcreteOnly()) return;
         printDebugBefore("funBegin 1");
         Globals.globals.cstack.funBegin(fname);
         Globals.globals.ptrace.printLineNumber(lineno,null,"call",null);
@@ -173,6 +215,7 @@ public class Call {
     }
 
     public static void funEnd(int lineno){
+        if(isConcreteOnly()) return;
         printDebugBefore("funEnd 1");
         Globals.globals.cstack.funEnd();
         Globals.globals.ptrace.printLineNumber(lineno);
@@ -180,6 +223,7 @@ public class Call {
     }
 
     public static void loadValue(double l,int lineno){
+        if(isConcreteOnly()) return;
         printDebugBefore("loadValue 1");
         Globals.globals.cstack.loadValue(l);
         printDebugAfter("loadValue 1",l,false,"");
@@ -214,63 +258,108 @@ public class Call {
     }
 
     public static void loadValue(Object o,int lineno){
+        if(isConcreteOnly()) return;
         printDebugBefore("loadValue 2");
-        long l = o==null?0:System.identityHashCode(o);
+        long l = o==null?0:ObjectIds.id(o);
         Globals.globals.cstack.loadValueLong(l);
-        printDebugAfter("loadValue 2",System.identityHashCode(o),false,"");
+        printDebugAfter("loadValue 2",l,false,"");
     }
 
     public static void loadValue(int lineno){
+        if(isConcreteOnly()) return;
         printDebugBefore("loadValue 3");
         Globals.globals.cstack.loadValueLong(0);
         printDebugAfter("loadValue 3",0,false,"");
     }
 
     public static void pushValue(double l,int lineno){
-        pushValue(new Double(l),lineno);
+        pushValue(Double.valueOf(l),lineno);
     }
 
     public static void pushValue(int l,int lineno){
-        pushValue(new Integer(l),lineno);
+        pushValue(Integer.valueOf(l),lineno);
     }
 
     public static void pushValue(byte l,int lineno){
-        pushValue(new Byte(l),lineno);
+        pushValue(Byte.valueOf(l),lineno);
     }
 
     public static void pushValue(short l,int lineno){
-        pushValue(new Short(l),lineno);
+        pushValue(Short.valueOf(l),lineno);
     }
 
     public static void pushValue(char l,int lineno){
-        pushValue(new Character(l),lineno);
+        pushValue(Character.valueOf(l),lineno);
     }
 
     public static void pushValue(boolean l,int lineno){
-        pushValue(new Boolean(l),lineno);
+        pushValue(Boolean.valueOf(l),lineno);
     }
 
     public static void pushValue(float l,int lineno){
-        pushValue(new Float(l),lineno);
+        pushValue(Float.valueOf(l),lineno);
     }
 
     public static void pushValue(long l,int lineno){
-        pushValue(new Long(l),lineno);
+        pushValue(Long.valueOf(l),lineno);
     }
 
     public static void pushValue(Object o,int lineno){
+        if(isConcreteOnly()) return;
         printDebugBefore("pushValue 1");
         Globals.globals.cstack.pushValue(o);
         printDebugAfter("pushValue 3",0,false,"");
     }
 
+    /**
+     * Called before a read (read is true) or a write of the reference field
+     * s of o, to initialize it if o is an object input built with -z.
+     */
+    public static void lazyInput(Object o,String c,int s,boolean read,int lineno){
+        if(!Globals.globals.initialized) {
+            Globals.globals.begin();
+        }
+        if(!Globals.globals.information.lazyInit) return;
+        printDebugBefore("lazyInput 1");
+        Globals.globals.input.lazyInput(o,c,s,read);
+        printDebugAfter("lazyInput 1",-1,false,"");
+    }
+
+    /**
+     * Instruments dst = a, where dst is a local and a is a local or, if a
+     * is 0, a constant.
+     */
+    public static void assign(int dst,int a,double va,int lineno){
+        if(isConcreteOnly() || Globals.globals.state.isConcrete()) return;
+        printDebugBefore("assign 1");
+        Globals.globals.cstack.assign(id(0,dst),id(0,a),va);
+        printDebugAfter("assign 1",id(0,dst),false,"");
+    }
+
+    /**
+     * Instruments dst = a op b, where dst is a local and a and b are locals
+     * or, if 0, constants.
+     */
+    public static void assignBinary(int dst,String op,int a,double va,int b,double vb,int lineno){
+        if(isConcreteOnly() || Globals.globals.state.isConcrete()) return;
+        printDebugBefore("assignBinary 1");
+        Globals.globals.cstack.assignBinary(id(0,dst),op,id(0,a),va,id(0,b),vb);
+        printDebugAfter("assignBinary 1",id(0,dst),false,op);
+    }
+
     public static void applyOp(String op,int lineno){
+        if(isConcreteOnly()) return;
         printDebugBefore("applyOp 1");
         Globals.globals.cstack.applyOp(op);
         printDebugAfter("applyOp 1",-1,false,op);
     }
 
     public static void branchPos(String funName,int bid,int bCount,int lineno){
+        if(isConcreteOnly()){
+            if(funName!=null)
+                Globals.globals.coverage.branchTaken(funName,bid,bCount,true);
+            return;
+        }
         printDebugBefore("branchPos 1");
         Globals.globals.cstack.branch(true,funName,bid,bCount);
         Globals.globals.ptrace.printLineNumber(lineno,null,"branch",null);
@@ -278,6 +367,11 @@ public class Call {
     }
 
     public static void branchNeg(String funName, int bid, int bCount,int lineno){
+        if(isConcreteOnly()){
+            if(funName!=null)
+                Globals.globals.coverage.branchTaken(funName,bid,bCount,false);
+            return;
+        }
         printDebugBefore("branchNeg 1");
         Globals.globals.cstack.branch(false,funName,bid,bCount);
         Globals.globals.ptrace.printLineNumber(lineno,null,"branch",null);
@@ -286,39 +380,53 @@ public class Call {
 
 
     // For concurrency only
-    public static void lock(Object l,String sig,int lineno){
-        printDebugBefore("lock 2");
-        Method[] ms = l.getClass().getMethods();
-        boolean flag = true;
-        for (int i = 0; flag && i < ms.length; i++) {
-            Method m = ms[i];
-            if(m.toString().endsWith(sig) && m.toString().indexOf("synchronized")!=-1){
-                flag = false;
+    // the synchronized methods looked up so far (Class -> String -> Boolean)
+    private static final ConcurrentHashMap synchronizedMethods = new ConcurrentHashMap();
+
+    /**
+     * @return true if sig is a synchronized method of the class of l. The
+     * answer is kept per class, so that the methods are only looked up once,
+     * and is read without a lock; two threads may look it up at once, and
+     * then find the same answer.
+     */
+    private static boolean isSynchronized(Object l,String sig){
+        Class c = l.getClass();
+        ConcurrentHashMap sigs = (ConcurrentHashMap)synchronizedMethods.get(c);
+        if(sigs==null){
+            synchronizedMethods.putIfAbsent(c,new ConcurrentHashMap());
+            sigs = (ConcurrentHashMap)synchronizedMethods.get(c);
+        }
+        Boolean b = (Boolean)sigs.get(sig);
+        if(b==null){
+            b = Boolean.FALSE;
+            Method[] ms = c.getMethods();
+            for (int i = 0; i < ms.length; i++) {
+                String m = ms[i].toString();
+                if(m.endsWith(sig) && m.indexOf("synchronized")!=-1){
+                    b = Boolean.TRUE;
+                    break;
+                }
             }
+            sigs.put(sig,b);
         }
+        return b.booleanValue();
+    }
 
-        if(!flag)
+    public static void lock(Object l,String sig,int lineno){
+        printDebugBefore("lock 2");
+        if(isSynchronized(l,sig))
             Globals.globals.sched.lock(l);
         Globals.globals.ptrace.printLineNumber(lineno,null,"lock",null);
-        printDebugAfter("lock 2",System.identityHashCode(l),true,"");
+        printDebugAfter("lock 2",l,true,"");
     }
 
     public static void unlock(Object l,String sig,int lineno){
         printDebugBefore("unlock 2");
-        printDebugAfter(">unlock 2",System.identityHashCode(l),true,"");
-        Method[] ms = l.getClass().getMethods();
-        boolean flag = true;
-        for (int i = 0; flag && i < ms.length; i++) {
-            Method m = ms[i];
-            if(m.toString().endsWith(sig) && m.toString().indexOf("synchronized")!=-1){
-                flag = false;
-            }
-        }
-
-        if(!flag)
+        printDebugAfter(">unlock 2",l,true,"");
+        if(isSynchronized(l,sig))
             Globals.globals.sched.unlock(l);
         Globals.globals.ptrace.printLineNumber(lineno,null,"lock",null);
-        printDebugAfter("unlock 2",System.identityHashCode(l),true,"");
+        printDebugAfter("unlock 2",l,true,"");
     }
 
 
@@ -326,15 +434,15 @@ public class Call {
         printDebugBefore("lock 1");
         Globals.globals.sched.lock(l);
         Globals.globals.ptrace.printLineNumber(lineno,null,"lock",null);
-        printDebugAfter("lock 1",System.identityHashCode(l),true,"");
+        printDebugAfter("lock 1",l,true,"");
     }
 
     public static void unlock(Object l,int lineno){
         printDebugBefore("unlock 1");
-        printDebugAfter(">unlock 1",System.identityHashCode(l),true,"");
+        printDebugAfter(">unlock 1",l,true,"");
         Globals.globals.sched.unlock(l);
         Globals.globals.ptrace.printLineNumber(lineno,null,"unlock",null);
-        printDebugAfter("unlock 1",System.identityHashCode(l),true,"");
+        printDebugAfter("unlock 1",l,true,"");
     }
 
     public static void readAccess(int f,int s,int lineno){
@@ -351,7 +459,7 @@ public class Call {
 
     public static void readAccess(Object o,int s,int lineno){
         printDebugBefore("readAccess 2");
-        int f = System.identityHashCode(o);
+        int f = ObjectIds.id(o);
         IndexInfo ii = new IndexInfo();
         RacePair rp = Globals.globals.sched.access(id(f,s),true,ii);
         Globals.globals.ptrace.printLineNumber(lineno,ii,"read",rp);
@@ -377,7 +485,7 @@ public class Call {
     public static void writeAccess(Object o,int s,int lineno){
         printDebugBefore("writeAccess 2");
         IndexInfo ii = new IndexInfo();
-        int f = System.identityHashCode(o);
+        int f = ObjectIds.id(o);
         RacePair rp = Globals.globals.sched.access(id(f,s),false,ii);
         Globals.globals.ptrace.printLineNumber(lineno,ii,"write",rp);
         if(rp.rl1!=null || rp.rl2!=null){
@@ -391,7 +499,7 @@ public class Call {
         printDebugBefore("waitBefore 1");
         Globals.globals.sched.waitBefore(l);
         Globals.globals.ptrace.printLineNumber(lineno);
-        printDebugAfter("waitBefore 1",System.identityHashCode(l),true,"");
+        printDebugAfter("waitBefore 1",l,true,"");
     }
 
     public static void waitOver(Object l,int lineno){
@@ -402,35 +510,35 @@ public class Call {
 
     public static void waitAfter(Object l,int lineno){
         printDebugBefore("waitAfter 1");
-        printDebugAfter(">waitAfter 1",System.identityHashCode(l),true,"");
+        printDebugAfter(">waitAfter 1",l,true,"");
         Globals.globals.sched.waitAfter(l);
-        printDebugAfter("waitAfter 1",System.identityHashCode(l),true,"");
+        printDebugAfter("waitAfter 1",l,true,"");
     }
 
     public static void notifyBefore(Object l,int lineno){
         printDebugBefore("notifyBefore 1");
         Globals.globals.sched.notifyBefore(l);
         Globals.globals.ptrace.printLineNumber(lineno);
-        printDebugAfter("notifyBefore 1",System.identityHashCode(l),true,"");
+        printDebugAfter("notifyBefore 1",l,true,"");
     }
 
     public static void notifyAllBefore(Object l,int lineno){
         printDebugBefore("notifyAllBefore 1");
         Globals.globals.sched.notifyAllBefore(l);
         Globals.globals.ptrace.printLineNumber(lineno);
-        printDebugAfter("notifyAllBefore 1",System.identityHashCode(l),true,"");
+        printDebugAfter("notifyAllBefore 1",l,true,"");
     }
 
     public static void notifyAfter(Object l,int lineno){
         printDebugBefore("notifyAfter 1");
         Globals.globals.ptrace.printLineNumber(lineno);
-        printDebugAfter("notifyAfter 1",System.identityHashCode(l),true,"");
+        printDebugAfter("notifyAfter 1",l,true,"");
     }
 
     public static void notifyAllAfter(Object l,int lineno){
         printDebugBefore("notifyAllAfter 1");
         Globals.globals.ptrace.printLineNumber(lineno);
-        printDebugAfter("notifyAllAfter 1",System.identityHashCode(l),true,"");
+        printDebugAfter("notifyAllAfter 1",l,true,"");
     }
 
     public static void endBefore(int lineno){
@@ -460,6 +568,89 @@ public class Call {
         printDebugAfter("startBefore 1",-1,true,""+t);
     }
 
+    /**
+     * Replaces t.start() when the program is instrumented with
+     * -Dcute.virtual=true: t is run on a virtual thread, if the JVM has them
+     * and is Java 24 or later (see VirtualThreads). t itself never starts,
+     * so the calls that ask t about its thread are redirected below.
+     */
+    public static void start(Object t,int lineno){
+        printDebugBefore("start 1");
+        Globals.globals.sched.start((Thread)t);
+        printDebugAfter("start 1",-1,true,""+t);
+    }
+
+    /**
+     * Replaces t.join() when the program is instrumented with
+     * -Dcute.virtual=true.
+     */
+    public static void join(Object t,int lineno) throws InterruptedException {
+        printDebugBefore("join 1");
+        Globals.globals.sched.join((Thread)t);
+        printDebugAfter("join 1",-1,true,""+t);
+    }
+
+    /**
+     * Replaces t.join(millis) and t.join(millis,nanos) when the program is
+     * instrumented with -Dcute.virtual=true.
+     */
+    public static void join(Object t,long millis,int nanos,int lineno) throws InterruptedException {
+        printDebugBefore("join 2");
+        Globals.globals.sched.join((Thread)t,millis,nanos);
+        printDebugAfter("join 2",-1,true,""+t);
+    }
+
+    /**
+     * Replaces Thread.currentThread() when the program is instrumented with
+     * -Dcute.virtual=true.
+     */
+    public static Thread currentThread(){
+        if(Globals.globals.sched==null){
+            // no thread was started in place of another yet
+            return Thread.currentThread();
+        }
+        return Globals.globals.sched.currentThread();
+    }
+
+    private static Thread runner(Object t){
+        if(Globals.globals.sched==null){
+            return (Thread)t;
+        }
+        return Globals.globals.sched.getRunner((Thread)t);
+    }
+
+    /**
+     * Replaces t.isAlive() when the program is instrumented with
+     * -Dcute.virtual=true.
+     */
+    public static boolean isAlive(Object t){
+        return runner(t).isAlive();
+    }
+
+    /**
+     * Replaces t.getState() when the program is instrumented with
+     * -Dcute.virtual=true.
+     */
+    public static Thread.State getState(Object t){
+        return runner(t).getState();
+    }
+
+    /**
+     * Replaces t.interrupt() when the program is instrumented with
+     * -Dcute.virtual=true.
+     */
+    public static void interrupt(Object t){
+        runner(t).interrupt();
+    }
+
+    /**
+     * Replaces t.isInterrupted() when the program is instrumented with
+     * -Dcute.virtual=true.
+     */
+    public static boolean isInterrupted(Object t){
+        return runner(t).isInterrupted();
+    }
+
     public static void startAfter(Object t,int lineno){
         printDebugBefore("startAfter 1");
         Globals.globals.sched.startAfter();
@@ -5,6 +5,7 @@ import argparser.BooleanHolder;
 import argparser.IntHolder;
 import argparser.StringHolder;
 import cute.Cute;
+import cute.concolic.concurrency.Fingerprints;
 import cute.concolic.concurrency.Scheduler;
 import cute.concolic.input.InputMap;
 import cute.concolic.logging.BranchCoverageLog;
@@ -66,6 +67,7 @@ public class Globals {
     public Random rand;
     public BranchCoverageLog coverage;
     public GenerateInputAndSchedule solver;
+    public Fingerprints fingerprints;
 
     public boolean initialized;
     public Information information;
@@ -102,11 +104,28 @@ public class Globals {
         BooleanHolder random = new BooleanHolder(false);
         parser.addOption("-r %v #if -r is specified, inputs are randomly initialized; " +
                 "else, inputs are set to 0. Objects are initialized to null in either cases.",random);
+        BooleanHolder concreteOnly = new BooleanHolder(false);
+        parser.addOption("-c %v #concrete: inputs are randomly initialized and only branch " +
+                "coverage is recorded (no symbolic execution). Inputs that increase coverage " +
+                "are kept for a later concolic run.",concreteOnly);
+        StringHolder seedFile = new StringHolder("");
+        parser.addOption("-e %s #seed: read the inputs from the given file, in the format of " +
+                NEW + "Inputs, and start with an empty branch history. The property cute.seed, " +
+                "if set, gives the file instead, for paths that contain ':'.",seedFile);
+        BooleanHolder lazyInit = new BooleanHolder(false);
+        parser.addOption("-z %v #lazy: reference fields of object inputs are only initialized " +
+                "when the program first reads them (needs -Dcute.lazy=true when instrumenting).",lazyInit);
+        BooleanHolder fingerprint = new BooleanHolder(false);
+        parser.addOption("-f %v #fingerprint: with DFS, do not backtrack past a scheduling point whose " +
+                "happens-before trace was reached by an earlier execution with the same inputs.",fingerprint);
         IntHolder randomSearch = new IntHolder(SEARCH_DFS);
         parser.addOption("-p %d {1,2,3,4} #search strategy to be invoked: " +
                 "1 (default) is DFS, 2 is random, 3 is quick, 4 is better random",randomSearch);
         BooleanHolder optimalDistributed = new BooleanHolder(false);
         parser.addOption("-a %v #turn off Optimal Distributed Search ",optimalDistributed);
+        BooleanHolder batchDelivery = new BooleanHolder(false);
+        parser.addOption("-b %v #batch: deliver the messages that have no alternative in the " +
+                "same scheduling step, without recording a schedule for them.",batchDelivery);
         BooleanHolder generateJUnit = new BooleanHolder(true);
         parser.addOption("-j %v #generate JUnit test cases",generateJUnit);
         BooleanHolder printTraceAndInputs = new BooleanHolder(true);
@@ -128,18 +147,22 @@ public class Globals {
         parser.matchAllArgs(args2);
         this.information.seed = seed.value;
         this.information.depth = depth.value;
-        this.information.random = random.value;
+        this.information.random = random.value || concreteOnly.value;
+        this.information.concreteOnly = concreteOnly.value;
+        // a path may contain ':', so the seed can also come in its own property
+        this.information.seedFile = System.getProperty("cute.seed",seedFile.value);
+        this.information.lazyInit = lazyInit.value;
+        this.information.fingerprint = fingerprint.value;
         this.information.searchMode = randomSearch.value;
         this.information.mode = mode.value;
         this.information.debugLevel = debugLevel.value;
         this.information.optimalDistributed = !optimalDistributed.value;
+        this.information.batchDelivery = batchDelivery.value;
         this.information.printTraceAndInputs = printTraceAndInputs.value;
         Cute.N = NArg.value;
         this.information.generateJUnit = generateJUnit.value;
         initialize();
         this.initialized = true;
-        this.sched.setPriority(Thread.MIN_PRIORITY);
-        this.sched.start();
     }
 
 
@@ -148,19 +171,24 @@ public class Globals {
         logger = new Logger(information,new PrintWriter(System.out));
         junitTest = new JUnitTestGenerator(information);
         ptrace = new ExecutionLog(logger,information);
-        try {
-            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream("cuteSymbolTable")));
+        if(SymbolTable.session!=null){
+            st = SymbolTable.session;
+            st.reverseMap();
+        } else {
             try {
-                st = (SymbolTable)in.readObject();
-                st.reverseMap();
-            } catch (ClassNotFoundException e) {
-                e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
+                ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream("cuteSymbolTable")));
+                try {
+                    st = (SymbolTable)in.readObject();
+                    st.reverseMap();
+                } catch (ClassNotFoundException e) {
+                    e.printStackTrace();
+                    System.exit(1);
+                }
+                in.close();
+            } catch (IOException e) {
+                e.printStackTrace();
                 System.exit(1);
             }
-            in.close();
-        } catch (IOException e) {
-            e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
-            System.exit(1);
         }
         state = new State(logger,information);
         history = new BranchHistory(logger,information);
@@ -170,9 +198,11 @@ public class Globals {
         coverage.read();
         input = new InputMap(information,logger,junitTest,state,ptrace,st,rand);
         input.read();
+        fingerprints = new Fingerprints(information,input);
+        fingerprints.read();
         cstack = new ComputationStacks(state,path,history,coverage,input);
-        solver = new GenerateInputAndSchedule(information,input,path,history,ptrace,logger,junitTest,rand,coverage);
-        sched = new Scheduler(information,path,state,history,rand,solver);
+        solver = new GenerateInputAndSchedule(information,input,path,history,ptrace,logger,junitTest,rand,coverage,fingerprints);
+        sched = new Scheduler(information,logger,path,state,history,rand,solver,fingerprints);
         information.brackTrackAt = -1;
         information.nThreads = 1;
     }
@@ -8,6 +8,9 @@ package cute.concolic;
  */
 public class Information {
     public boolean random;
+    public boolean concreteOnly;
+    public String seedFile;
+    public boolean lazyInit;
     public int searchMode;
     public int mode;
     public int optimized;
@@ -18,6 +21,8 @@ public class Information {
     public int brackTrackAt;
     public int nThreads;
     public boolean optimalDistributed;
+    public boolean batchDelivery;
+    public boolean fingerprint;
     public boolean solved;
 
     public boolean printTraceAndInputs;
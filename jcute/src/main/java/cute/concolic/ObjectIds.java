@@ -0,0 +1,100 @@
+package cute.concolic;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gives every object a unique, small id, to be used for symbolic addresses
+ * and pointer values instead of System.identityHashCode, which may be the
+ * same for two live objects and then silently aliases their symbolic state.
+ * <p>
+ * Ids start at 1, so that 0 still stands for null and for the locals of
+ * Call.id. The objects are held weakly, and an id is never given twice.
+ * Looking up an object that already has an id takes no lock.
+ */
+public class ObjectIds {
+    private static final ConcurrentHashMap ids = new ConcurrentHashMap();
+    private static final AtomicInteger next = new AtomicInteger(1);
+    private static final ReferenceQueue queue = new ReferenceQueue();
+
+    /**
+     * The key of a live object in ids, compared by identity.
+     */
+    private static class Key extends WeakReference {
+        final int hash;
+
+        Key(Object o) {
+            super(o, queue);
+            hash = System.identityHashCode(o);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object other) {
+            if (other == this) {
+                return true;
+            }
+            Object o = get();
+            return o != null && other instanceof Key && ((Key) other).get() == o
+                    || other instanceof Probe && ((Probe) other).o == o;
+        }
+    }
+
+    /**
+     * A key to look up an object in ids, without a weak reference.
+     */
+    private static class Probe {
+        final Object o;
+
+        Probe(Object o) {
+            this.o = o;
+        }
+
+        public int hashCode() {
+            return System.identityHashCode(o);
+        }
+
+        public boolean equals(Object other) {
+            return other instanceof Key && ((Key) other).get() == o;
+        }
+    }
+
+    /**
+     * @return the id of o, or 0, if o is null.
+     */
+    public static int id(Object o) {
+        if (o == null) {
+            return 0;
+        }
+        Integer id = (Integer) ids.get(new Probe(o));
+        if (id != null) {
+            return id.intValue();
+        }
+        expunge();
+        id = Integer.valueOf(next.getAndIncrement());
+        Integer old = (Integer) ids.putIfAbsent(new Key(o), id);
+        return old != null ? old.intValue() : id.intValue();
+    }
+
+    /**
+     * @return the id of o, or 0, if o is null or was never given an id.
+     */
+    public static int find(Object o) {
+        if (o == null) {
+            return 0;
+        }
+        Integer id = (Integer) ids.get(new Probe(o));
+        return id == null ? 0 : id.intValue();
+    }
+
+    private static void expunge() {
+        Key stale;
+        while ((stale = (Key) queue.poll()) != null) {
+            ids.remove(stale);
+        }
+    }
+}
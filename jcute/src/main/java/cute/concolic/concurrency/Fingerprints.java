@@ -0,0 +1,226 @@
+package cute.concolic.concurrency;
+
+import cute.concolic.Information;
+import cute.concolic.input.InputMap;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The fingerprints of the states reached at the scheduling points of the
+ * executions explored so far, kept across executions in cuteFingerprints.
+ * <p>
+ * The fingerprint of a state is the sum of the hashes of the steps taken
+ * before it, combined with the hash of the input values given to the
+ * program before it, so that executions that read different data, such as
+ * fresh random values with -r, do not share fingerprints. A step is hashed with its
+ * thread and its index in the thread, and an access also with the number of
+ * writes to the location (or acquisitions of the lock) before it. Two
+ * executions that only differ in the order of independent steps, that is,
+ * that have the same reads-from, write and lock orders, so reach the same
+ * fingerprint.
+ * <p>
+ * The table has a fixed size. A fingerprint that finds no free slot near
+ * its own replaces the one in its slot, so that a fingerprint can be
+ * forgotten, and its state explored again, but never wrongly reported.
+ * <p>
+ * The executions from a state that is not explored again would have found
+ * races with the steps before it, and set the points to backtrack to for
+ * them. So the accesses and acquisitions made by the executions are kept
+ * too, with the thread and the index in the thread of their step, and those
+ * that a thread may still make are taken to race with the steps before a
+ * state that is not explored again.
+ * <p>
+ * Only what an execution adds is appended to cuteFingerprints, so that the
+ * file is not written again in every execution.
+ */
+public class Fingerprints {
+    public final static String file = "cuteFingerprints";
+    private static final int CAPACITY = 1 << 16;
+    private static final int PROBES = 8;
+    private static final byte FINGERPRINT = 0;
+    private static final byte OPERATION = 1;
+
+    private Information information;
+    private InputMap inputs;
+    private long[] table;
+    private Set operations = new HashSet();
+    // the fingerprints and operations added by this execution
+    private LinkedList added = new LinkedList();
+
+    /**
+     * An access or an acquisition made by the n-th step of a thread.
+     */
+    static class Operation {
+        final int tid;
+        final int n;
+        final int type;
+        final long addr;
+
+        Operation(int tid, int n, int type, long addr) {
+            this.tid = tid;
+            this.n = n;
+            this.type = type;
+            this.addr = addr;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Operation)) {
+                return false;
+            }
+            Operation op = (Operation) o;
+            return tid == op.tid && n == op.n && type == op.type && addr == op.addr;
+        }
+
+        public int hashCode() {
+            return (int) access(tid, n, type, addr, 0);
+        }
+    }
+
+    public Fingerprints(Information information, InputMap inputs) {
+        this.information = information;
+        this.inputs = inputs;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return the hash of the n-th step of thread tid, an access to addr made
+     * after version writes to addr, or version acquisitions if addr is a
+     * lock; version is -1 for the scheduling of the step.
+     */
+    public static long access(int tid, int n, int type, long addr, int version) {
+        return mix(mix(mix(mix(((long) tid << 32) + n) + type) ^ addr) + version);
+    }
+
+    /**
+     * Adds the fingerprint of the state reached after the steps whose hashes
+     * sum to trace, where the threads of postponed are not to be scheduled.
+     * The postponed threads act as a sleep set, which cuts the executions
+     * explored from the state, so they are part of the fingerprint.
+     *
+     * @return false, if the fingerprint was already there.
+     */
+    public boolean add(long trace, List postponed) {
+        long sleep = 0;
+        for (Iterator iterator = postponed.iterator(); iterator.hasNext();) {
+            sleep += mix(((Integer) iterator.next()).intValue() + 0x9E3779B97F4A7C15L);
+        }
+        long fp = mix(trace + 31 * (inputs.getInputHash() + 31 * sleep));
+        if (!put(fp)) {
+            return false;
+        }
+        added.add(new Long(fp));
+        return true;
+    }
+
+    /**
+     * Adds the access or acquisition of addr that the n-th step of thread
+     * tid makes.
+     */
+    public void addOperation(int tid, int n, int type, long addr) {
+        Operation op = new Operation(tid, n, type, addr);
+        if (operations.add(op)) {
+            added.add(op);
+        }
+    }
+
+    /**
+     * @return the accesses and acquisitions made by the executions so far.
+     */
+    Set getOperations() {
+        return operations;
+    }
+
+    private boolean put(long fp) {
+        if (fp == 0) {
+            fp = 1;
+        }
+        int mask = CAPACITY - 1;
+        int h = (int) (fp ^ (fp >>> 32)) & mask;
+        for (int p = 0; p < PROBES; p++) {
+            int i = (h + p) & mask;
+            if (table[i] == fp) {
+                return false;
+            }
+            if (table[i] == 0) {
+                table[i] = fp;
+                return true;
+            }
+        }
+        table[h] = fp;
+        return true;
+    }
+
+    public void read() {
+        if (!information.fingerprint) {
+            return;
+        }
+        table = new long[CAPACITY];
+        if (information.mode == 2) {
+            (new File(file)).delete();
+        }
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        } catch (IOException e) {
+            return;
+        }
+        try {
+            while (true) {
+                byte tag;
+                try {
+                    tag = in.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (tag == FINGERPRINT) {
+                    put(in.readLong());
+                } else {
+                    operations.add(new Operation(in.readInt(), in.readInt(),
+                            in.readInt(), in.readLong()));
+                }
+            }
+            in.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Appends the fingerprints and operations added by this execution to
+     * cuteFingerprints.
+     */
+    public void write() {
+        if (!information.fingerprint || information.mode == 1 || added.isEmpty()) {
+            return;
+        }
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            for (Iterator iterator = added.iterator(); iterator.hasNext();) {
+                Object o = iterator.next();
+                if (o instanceof Long) {
+                    out.writeByte(FINGERPRINT);
+                    out.writeLong(((Long) o).longValue());
+                } else {
+                    Operation op = (Operation) o;
+                    out.writeByte(OPERATION);
+                    out.writeInt(op.tid);
+                    out.writeInt(op.n);
+                    out.writeInt(op.type);
+                    out.writeLong(op.addr);
+                }
+            }
+            out.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        added.clear();
+    }
+}
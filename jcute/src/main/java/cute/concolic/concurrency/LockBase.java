@@ -10,28 +10,9 @@ import java.util.IdentityHashMap;
  * Time: 2:50:09 PM
  */
 
-class PrevCount {
-    private IdentityHashMap prevC = new IdentityHashMap();
-
-    public void setCount(int c){
-        Thread curr = Thread.currentThread();
-        prevC.put(curr,new Integer(c));
-    }
-
-    public int getCount(){
-        Thread curr = Thread.currentThread();
-        Integer i = (Integer)prevC.get(curr);
-        if(i==null)
-            return 1;
-        else {
-            return i.intValue();
-        }
-    }
-}
-
-
 public class LockBase {
     private IdentityHashMap locks;
+    private int nextId = 0;
 
     public LockBase() {
         locks = new IdentityHashMap();
@@ -56,27 +37,38 @@ public class LockBase {
         lc.increment();
     }
 
-    public void decrementCount(Object l){
+    /**
+     * @return the count of l that remains.
+     */
+    public int decrementCount(Object l){
         LockCount lc = (LockCount)locks.get(l);
         assert lc.getCount()>0;
-        lc.decrement();
-
+        return lc.decrement();
     }
 
-    public void acquire(Object l){
+    /**
+     * Acquires l for the current thread with the given count, 1 unless the
+     * thread acquires l again after a wait.
+     * @return the record of l.
+     */
+    LockCount acquire(Object l,int count){
         LockCount lc = (LockCount)locks.get(l);
         if(lc==null){
-            lc = new LockCount();
+            lc = new LockCount(nextId++);
             locks.put(l,lc);
         }
         assert lc.getCount()==0;
-        lc.acquire();
+        lc.acquire(count);
+        return lc;
     }
 
-    public void release(Object l){
+    /**
+     * @return the count of l before the release.
+     */
+    public int release(Object l){
         LockCount lc = (LockCount)locks.get(l);
         assert lc.getCount()>0;
-        lc.release();
+        return lc.release();
     }
 
     public boolean isHeldByAnyThread(Object l) {
@@ -87,6 +79,17 @@ public class LockBase {
             return lc.getCount()>0;
     }
 
+    /**
+     * @return the thread that holds l, or null.
+     */
+    public Thread getOwner(Object l) {
+        LockCount lc = (LockCount)locks.get(l);
+        if(lc==null || lc.getCount()<=0)
+            return null;
+        else
+            return lc.getThread();
+    }
+
     public int getCount(Object l) {
         LockCount lc = (LockCount)locks.get(l);
         if(lc==null){
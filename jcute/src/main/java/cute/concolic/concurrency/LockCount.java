@@ -6,11 +6,22 @@ package cute.concolic.concurrency;
  * User: Koushik Sen (ksen@cs.uiuc.edu)
  * Date: Jun 26, 2006
  * Time: 2:50:09 PM
+ *
+ * The record of a lock: its owner and count, and its logical id, which is
+ * its bit in the locksets of ThreadBase.
  */
 class LockCount{
+    final int id;
+    /** the lockset that holds only this lock */
+    final long[] single;
     private Thread thread = null;
     private int count = 0;
-    private PrevCount prevC = new PrevCount();
+
+    LockCount(int id){
+        this.id = id;
+        single = new long[(id>>6)+1];
+        single[id>>6] = 1L<<(id&63);
+    }
 
     public Thread getThread() {
         return thread;
@@ -24,18 +35,22 @@ class LockCount{
         count++;
     }
 
-    public void decrement() {
-        prevC.setCount(count);
-        count--;
+    public int decrement() {
+        return --count;
     }
 
-    public void release(){
-        prevC.setCount(count);
+    /**
+     * @return the count before the release, which a thread that waits on
+     * the lock gets back when it acquires the lock again.
+     */
+    public int release(){
+        int c = count;
         count=0;
+        return c;
     }
 
-    public void acquire(){
+    public void acquire(int c){
         thread = Thread.currentThread();
-        count = prevC.getCount();
+        count = c;
     }
 }
@@ -3,7 +3,9 @@ package cute.concolic.concurrency;
 import cute.Cute;
 import cute.concolic.Globals;
 import cute.concolic.Information;
+import cute.concolic.ObjectIds;
 import cute.concolic.generateinputandschedule.GenerateInputAndSchedule;
+import cute.concolic.logging.Logger;
 import cute.concolic.logging.RaceLog;
 import cute.concolic.pathconstraint.PathConstraint;
 import cute.concolic.pathconstraint.ScheduleConstraint;
@@ -14,8 +16,10 @@ import java.util.*;
 /**
  * Author: Koushik Sen <ksen@cs.uiuc.edu>
  */
-public class Scheduler extends Thread {
-    public Semaphore semaphore = new Semaphore();
+public class Scheduler {
+    // the scheduling requests not served yet, and whether a thread is serving them
+    private int requests = 0;
+    private boolean serving = false;
     public Semaphore blocker = new Semaphore(1);
     public Semaphore waitNotifySemaphore = new Semaphore(1);
     public IdentityHashMap numbersNotified = new IdentityHashMap();
@@ -26,13 +30,17 @@ public class Scheduler extends Thread {
     public TreeMap logicalIdToThread = new TreeMap();
     // maps thread id to Thread (Integer -> ThreadBase)
     public TreeMap logicalIdToThreadBase = new TreeMap();
+    // virtual threads share the id of the Thread they run, so ids are counted apart
+    private int nextLogicalId = 0;
+    // the thread started in place of a Thread, and the reverse (Thread -> Thread)
+    private IdentityHashMap runners = new IdentityHashMap();
+    private IdentityHashMap standIns = new IdentityHashMap();
 
     // maps Lock object to Thread (Object -> Thread)
     public LockBase locks = new LockBase();
 
-    private HashMap read = new HashMap();
-    private HashMap write = new HashMap();
-    private HashMap lock = new HashMap();
+    private ShadowMemory memory = new ShadowMemory();
+    private ShadowMemory lockMemory = new ShadowMemory();
 
     private LinkedList postponed = new LinkedList();
     private long lastAccessed;
@@ -42,20 +50,27 @@ public class Scheduler extends Thread {
     private Integer chosenThread = null;
 
     private Information information;
+    private Logger logger;
     private PathConstraint path;
     private cute.concolic.symbolicstate.State state;
     private BranchHistory history;
     private Random rand;
     private GenerateInputAndSchedule solver;
+    private Fingerprints fingerprints;
+    // the sum of the hashes of the steps taken so far, see Fingerprints
+    private long trace = 0;
 
-    public Scheduler(Information information, PathConstraint path, cute.concolic.symbolicstate.State state,
-                     BranchHistory history, Random rand, GenerateInputAndSchedule solver) {
+    public Scheduler(Information information, Logger logger, PathConstraint path,
+                     cute.concolic.symbolicstate.State state, BranchHistory history, Random rand,
+                     GenerateInputAndSchedule solver, Fingerprints fingerprints) {
         this.information = information;
+        this.logger = logger;
         this.path = path;
         this.state = state;
         this.history = history;
         this.rand = rand;
         this.solver = solver;
+        this.fingerprints = fingerprints;
     }
 
     public Thread getThread(Integer i){
@@ -77,7 +92,7 @@ public class Scheduler extends Thread {
         if(t==null) throw  new NullPointerException();
         Integer tmp = (Integer)threadToLogicalId.get(t);
         if(tmp==null){
-            tmp = new Integer(threadToLogicalId.size());
+            tmp = new Integer(nextLogicalId++);
             threadToLogicalId.put(t,tmp);
             synchronized(logicalIdToThread){
                 logicalIdToThread.put(tmp,t);
@@ -85,15 +100,22 @@ public class Scheduler extends Thread {
         }
         ThreadBase tb = getThreadBaseFromId(tmp);
         if (tb==null){
-            tb = new ThreadBase(t);
+            tb = new ThreadBase(t,tmp.intValue());
             logicalIdToThreadBase.put(tmp,tb);
         }
         return tb;
     }
 
+    // the ThreadBase of the current thread, found without the maps once known
+    private final ThreadLocal current = new ThreadLocal();
+
     public ThreadBase getThreadBase(){
-        Thread t = Thread.currentThread();
-        return getThreadBase(t);
+        ThreadBase tb = (ThreadBase)current.get();
+        if(tb==null){
+            tb = getThreadBase(Thread.currentThread());
+            current.set(tb);
+        }
+        return tb;
     }
 
     public static final int READ = 1;
@@ -101,27 +123,36 @@ public class Scheduler extends Thread {
     public static final int LOCK = 3;
     public static final int NONE = 4;
 
-    private RaceLog checkAndSetRaceTmp(HashMap threadToVarInfo,Integer thisTid,ThreadBase tb,boolean reportRace){
+    private RaceLog checkAndSetRaceTmp(int tid,int clock,int index,long[] locks,ThreadBase tb,boolean reportRace){
+        if(tid<0 || tid==tb.tid || clock<=tb.getTime(tid) || tb.intersects(locks)){
+            return null;
+        }
         RaceLog rl = null;
-        if(threadToVarInfo!=null){
-            VarInfo vinfoa;
-            for (Iterator iterator = threadToVarInfo.keySet().iterator(); iterator.hasNext();) {
-                Integer tid = (Integer) iterator.next();
-                if(!tid.equals(thisTid)){
-                    vinfoa = (VarInfo)threadToVarInfo.get(tid);
-                    if(tb.isIndependent(vinfoa.getVc()) && !tb.intersects(vinfoa.getLocks())){
-                        if(tb.getLastRaceAt(tid)<vinfoa.getIndex()){
-                            tb.setLastRaceAt(tid,vinfoa.getIndex());
-                            ScheduleConstraint pe2 = path.getSchedule(vinfoa.getIndex());
-                            if(!pe2.getPostponed().contains(thisTid))
-                                pe2.setRace(true);
-                            if(reportRace){
-                                information.returnVal = Cute.EXIT_RACE;
-                                rl = new RaceLog(vinfoa.getIndex(),path.size()-1);
-                            }
-                        }
-                    }
-                }
+        if(tb.getLastRaceAt(tid)<index){
+            tb.setLastRaceAt(tid,index);
+            ScheduleConstraint pe2 = path.getSchedule(index);
+            Integer thisTid = new Integer(tb.tid);
+            if(!pe2.getPostponed().contains(thisTid)){
+                pe2.setRace(true);
+                pe2.addBacktrack(thisTid);
+            }
+            if(reportRace){
+                information.returnVal = Cute.EXIT_RACE;
+                rl = new RaceLog(index,path.size()-1);
+            }
+        }
+        return rl;
+    }
+
+    private RaceLog checkAndSetRaceWith(ShadowMemory.Accesses a,ThreadBase tb,boolean reportRace){
+        if(a.tid!=ShadowMemory.Accesses.SHARED){
+            return checkAndSetRaceTmp(a.tid,a.clock,a.index,a.locks,tb,reportRace);
+        }
+        RaceLog rl = null;
+        for(int tid=0;tid<a.indexes.length;tid++){
+            if(a.indexes[tid]>=0){
+                RaceLog tmp = checkAndSetRaceTmp(tid,a.clocks[tid],a.indexes[tid],a.lockSets[tid],tb,reportRace);
+                if(tmp!=null) rl = tmp;
             }
         }
         return rl;
@@ -129,42 +160,83 @@ public class Scheduler extends Thread {
 
     public RacePair checkAndSetRace(long addr, int accessType, IndexInfo ii){
         ThreadBase tb = getThreadBase();
-        VarInfo vinfoa;
-
-        Integer thisTid = (Integer)threadToLogicalId.get(Thread.currentThread());
-        HashMap threadToVarInfo=null;
-        Long var = new Long(addr);
+        ii.index = path.size()-1;
+        if(accessType==LOCK){
+            lockAccess(addr,tb);
+            return new RacePair();
+        }
+        int clock = tb.getTime(tb.tid);
+        long[] locks = tb.getLockSet();
         RacePair rp = new RacePair();
-        if(accessType == WRITE || accessType == READ){
-            threadToVarInfo = (HashMap)write.get(var);
-            rp.rl1 = checkAndSetRaceTmp(threadToVarInfo,thisTid,tb,true);
+        ShadowMemory.Location loc = memory.get(addr);
+        if(information.fingerprint){
+            trace += Fingerprints.access(tb.tid,tb.events,accessType,addr,
+                    accessType==WRITE ? loc.version++ : loc.version);
         }
+        rp.rl1 = checkAndSetRaceWith(loc.writes,tb,true);
         if(accessType==WRITE){
-            threadToVarInfo = (HashMap)read.get(var);
-            rp.rl2 = checkAndSetRaceTmp(threadToVarInfo,thisTid,tb,true);
-        }
-        if(accessType==LOCK){
-            threadToVarInfo = (HashMap)lock.get(var);
-            checkAndSetRaceTmp(threadToVarInfo,thisTid,tb,false);
+            rp.rl2 = checkAndSetRaceWith(loc.reads,tb,true);
+            loc.writes.removeBefore(tb);
+            loc.writes.add(tb,clock,ii.index,locks);
+            loc.reads.removeBefore(tb);
+        } else {
+            loc.reads.add(tb,clock,ii.index,locks);
         }
+        return rp;
+    }
 
-        vinfoa = new VarInfo(tb.getVc(),tb.getLocks(),path.size()-1);
-        ii.index = vinfoa.getIndex();
-        HashMap tmp;
-        if(accessType == WRITE){
-            tmp = write;
-        } else if(accessType==READ){
-            tmp = read;
-        } else {
-            tmp = lock;
+    /**
+     * Records an acquisition of the lock addr by tb. Every acquisition of a
+     * lock is kept, as the reads of a location are, and only sets races to
+     * backtrack, so nothing is allocated for it.
+     */
+    private void lockAccess(long addr,ThreadBase tb){
+        ShadowMemory.Location loc = lockMemory.get(addr);
+        if(information.fingerprint){
+            trace += Fingerprints.access(tb.tid,tb.events,LOCK,addr,loc.version++);
         }
-        threadToVarInfo = (HashMap)tmp.get(var);
-        if(threadToVarInfo==null){
-            threadToVarInfo = new HashMap();
-            tmp.put(var,threadToVarInfo);
+        checkAndSetRaceWith(loc.reads,tb,false);
+        loc.reads.add(tb,tb.getTime(tb.tid),path.size()-1,tb.getLockSet());
+    }
+
+    // the cycle of the wait-for graph found by checkDeadlock, if any
+    private String deadlock = null;
+
+    /**
+     * Called when tb starts to wait for a lock or to join a thread, which
+     * adds an edge to the wait-for graph: a thread waits for the thread that
+     * holds the lock it wants, or for the thread it joins. A thread has at
+     * most one such edge, so a cycle through the new edge is found by
+     * following the edges from tb. The next scheduling step then reports the
+     * deadlock and backtracks, instead of running the threads out of the
+     * cycle first.
+     */
+    private void checkDeadlock(ThreadBase tb){
+        StringBuffer trace = new StringBuffer("Deadlock:");
+        ThreadBase t = tb;
+        for(int i=0;i<logicalIdToThreadBase.size();i++){
+            ThreadBase next;
+            if(t.ended){
+                return;
+            } else if(t.waitingOn!=null && locks.getOwner(t.waitingOn)!=null
+                    && locks.getOwner(t.waitingOn)!=t.getThread()){
+                next = getThreadBase(locks.getOwner(t.waitingOn));
+                trace.append(" thread ").append(t.tid).append(" waits for lock ")
+                        .append(t.waitingOn.getClass().getName()).append("@").append(ObjectIds.id(t.waitingOn))
+                        .append(" held by thread ").append(next.tid).append(";");
+            } else if(t.joining!=null){
+                next = t.joining;
+                trace.append(" thread ").append(t.tid).append(" joins thread ").append(next.tid).append(";");
+            } else {
+                return;
+            }
+            if(next==tb){
+                deadlock = trace.toString();
+                if((information.debugLevel&2)!=0) logger.info(2,deadlock,null);
+                return;
+            }
+            t = next;
         }
-        threadToVarInfo.put(thisTid,vinfoa);
-        return rp;
     }
 
     public void startBefore(Thread child){
@@ -172,12 +244,88 @@ public class Scheduler extends Thread {
         ThreadBase tb2 = getThreadBase();
         ThreadBase tb = getThreadBase(child);
         tb.setVc(tb2.getVc());
-        tb.addOneToVc(child);
+        tb.addOneToVc();
         tb2.addOneToVc();
         information.nThreads++;
         blocker.release();
     }
 
+    /**
+     * Starts child on a virtual thread that runs child.run(), if the JVM has
+     * virtual threads; otherwise, starts child. The virtual thread is given
+     * the logical id of child, so it is scheduled in its place.
+     */
+    public void start(Thread child){
+        Thread runner = VirtualThreads.unstarted(child);
+        if(runner==null){
+            child.start();
+            return;
+        }
+        start(child,runner);
+    }
+
+    /**
+     * Starts runner, which runs child.run(), in place of child.
+     */
+    void start(Thread child,Thread runner){
+        blocker.acquire();
+        ThreadBase tb = getThreadBase(child);
+        threadToLogicalId.put(runner,getLogicalId(child));
+        tb.thread = runner;
+        runners.put(child,runner);
+        standIns.put(runner,child);
+        blocker.release();
+        runner.start();
+    }
+
+    /**
+     * @return the thread that runs t, which is t itself unless t was started
+     * by {@link #start(Thread)}.
+     */
+    public Thread getRunner(Thread t){
+        blocker.acquire();
+        Thread runner = (Thread)runners.get(t);
+        blocker.release();
+        return runner==null?t:runner;
+    }
+
+    /**
+     * @return the Thread of the program that the current thread runs, which
+     * is the current thread itself unless it was started in place of a Thread
+     * by {@link #start(Thread)}.
+     */
+    public Thread currentThread(){
+        Thread t = Thread.currentThread();
+        blocker.acquire();
+        Thread standIn = (Thread)standIns.get(t);
+        blocker.release();
+        return standIn==null?t:standIn;
+    }
+
+    /**
+     * Waits for the thread that runs child, which is child itself unless
+     * child was started by {@link #start(Thread)}.
+     */
+    public void join(Thread child) throws InterruptedException {
+        Thread runner;
+        blocker.acquire();
+        runner = getThreadBase(child).getThread();
+        blocker.release();
+        runner.join();
+    }
+
+    /**
+     * Like {@link #join(Thread)}, but waits at most millis milliseconds and
+     * nanos nanoseconds, as Thread.join(long,int) does.
+     */
+    public void join(Thread child,long millis,int nanos) throws InterruptedException {
+        Thread runner;
+        blocker.acquire();
+        runner = getThreadBase(child).getThread();
+        blocker.release();
+        runner.join(millis,nanos);
+    }
+
     public void startAfter(){
         blocker.acquire();
         ThreadBase tb = getThreadBase();
@@ -193,7 +341,7 @@ public class Scheduler extends Thread {
 
         tb.toAccess = addr;
         tb.toAccessType = read?READ:WRITE;
-        semaphore.release();
+        requestSchedule();
         blocker.release();
         tb.acquire();
         blocker.acquire();
@@ -206,36 +354,35 @@ public class Scheduler extends Thread {
 
     public void lock(Object l){
         blocker.acquire();
-        long addr = System.identityHashCode(l);
         if(locks.isHeldByCurrentThread(l)){
             locks.incrementCount(l);
             blocker.release();
             return;
         }
+        long addr = ObjectIds.id(l);
         ThreadBase tb = getThreadBase();
         tb.enableAll();
         tb.waitingOn = l;
+        checkDeadlock(tb);
 
         tb.toAccess = addr;
         tb.toAccessType = LOCK;
 
-        semaphore.release();
+        requestSchedule();
         blocker.release();
 
         tb.acquire();
 
         blocker.acquire();
         tb.toAccessType = NONE;
-        checkAndSetRace(addr,LOCK, new IndexInfo());
-        locks.acquire(l);
-        tb.addLock(l);
+        lockAccess(addr,tb);
+        tb.addLock(locks.acquire(l,1));
         blocker.release();
     }
 
     public void unlock(Object l){
         blocker.acquire();
-        locks.decrementCount(l);
-        if(!locks.isHeldByCurrentThread(l)){
+        if(locks.decrementCount(l)==0){
             getThreadBase().removeLock();
         }
         blocker.release();
@@ -244,22 +391,23 @@ public class Scheduler extends Thread {
     public void waitBefore(Object l){
         blocker.acquire();
         ThreadBase tb = getThreadBase();
-        locks.release(l);
+        tb.waitCount = locks.release(l);
         tb.removeLock();
         tb.enableAll();
         tb.enabled = false;
         waits.add(l,Thread.currentThread());
-        semaphore.release();
+        requestScheduleFromServer();
         blocker.release();
     }
 
     public void waitAfter(Object l){
         blocker.acquire();
         waits.remove(l,Thread.currentThread());
-        long addr = System.identityHashCode(l);
+        long addr = ObjectIds.id(l);
         ThreadBase tb = getThreadBase();
         tb.enableAll();
         tb.waitingOn = l;
+        checkDeadlock(tb);
 
         tb.toAccess = addr;
         tb.toAccessType = LOCK;
@@ -271,9 +419,8 @@ public class Scheduler extends Thread {
 
         blocker.acquire();
         tb.toAccessType = NONE;
-        checkAndSetRace(addr,LOCK, new IndexInfo());
-        locks.acquire(l);
-        tb.addLock(l);
+        lockAccess(addr,tb);
+        tb.addLock(locks.acquire(l,tb.waitCount));
         blocker.release();
     }
 
@@ -300,7 +447,9 @@ public class Scheduler extends Thread {
         tb.enabled = false;
         if(logicalIdToThread.containsKey(getLogicalId(child))){
             joins.add(child,Thread.currentThread());
-            semaphore.release();
+            tb.joining = getThreadBase(child);
+            checkDeadlock(tb);
+            requestSchedule();
         }
         blocker.release();
     }
@@ -308,14 +457,14 @@ public class Scheduler extends Thread {
     public void joinAfter(Thread child){
         blocker.acquire();
         ThreadBase tb = getThreadBase();
-        if(!child.isAlive()){
+        if(!getThreadBase(child).getThread().isAlive()){
             tb.maxVc(getThreadBase(child).getVc());
         }
         tb.enableAll();
         if(joins.contains(child)){
             joins.remove(child,Thread.currentThread());
         }
-        semaphore.release();
+        requestSchedule();
         blocker.release();
         tb.acquire();
     }
@@ -325,17 +474,17 @@ public class Scheduler extends Thread {
         blocker.acquire();
         ThreadBase tb = getThreadBase();
         tb.enabled=false;
-        logicalIdToThread.remove(getLogicalId(Thread.currentThread()));
+        tb.ended=true;
+        Object self = logicalIdToThread.remove(getLogicalId(Thread.currentThread()));
         state.popLocals();
-        if(joins.contains(Thread.currentThread())){
-            semaphore.decrement(joins.size(Thread.currentThread()));
+        if(joins.contains(self)){
+            requests -= joins.size(self);
         }
-        for (Iterator iterator = tb.getLocks().iterator(); iterator.hasNext();) {
-            Object l = iterator.next();
-            locks.release(l);
+        for (int i = 0; i < tb.getLockCount(); i++) {
+            tb.getLock(i).release();
         }
         //tb.removeAllLocks();
-        semaphore.release();
+        requestSchedule();
         blocker.release();
     }
 
@@ -343,35 +492,87 @@ public class Scheduler extends Thread {
         return locks.getCount(l);
     }
 
-    public void run() {
-        while(true){
-            semaphore.acquire();
-            Thread.yield();
-            blocker.acquire();
-            assert numbersNotified.size()<=1;
-            if(numbersNotified.size()==1){
-                Object l = numbersNotified.keySet().toArray()[0];
-                Integer N = (Integer)numbersNotified.get(l);
-                if(N!=null && !locks.isHeldByAnyThread(l)){
-                    int n = N.intValue();
-                    if(n>0){
-                        waitNotifySemaphore.decrement(n);
-                        numbersNotified.remove(l);
-                        blocker.release();
-                        waitNotifySemaphore.acquire();
-                        waitNotifySemaphore.release();
+    /**
+     * Called with blocker held by a thread that reaches a scheduling point.
+     * The thread chooses the next thread itself and hands control to it, and
+     * then waits on its own ThreadBase until it is chosen. A request that
+     * comes while another thread is serving is served by that thread.
+     */
+    private void requestSchedule(){
+        requests++;
+        if(serving) return;
+        serving = true;
+        serve();
+    }
+
+    private void serve(){
+        while(requests>0){
+            requests--;
+            schedule();
+        }
+        serving = false;
+    }
+
+    // serves the requests of threads that still hold the monitor of a lock, see waitBefore
+    private Thread server = null;
+    private Semaphore serverRequests = new Semaphore(0);
+
+    /**
+     * Like requestSchedule, but the requests are served by a thread that
+     * holds no monitor. A thread in waitBefore still holds the monitor of
+     * the lock until it calls wait, and schedule may wait with blocker
+     * released until a notified thread returns from wait, which needs that
+     * monitor.
+     */
+    private void requestScheduleFromServer(){
+        requests++;
+        if(serving) return;
+        serving = true;
+        if(server==null){
+            server = new Thread("cute scheduler"){
+                public void run(){
+                    while(true){
+                        serverRequests.acquire();
                         blocker.acquire();
+                        serve();
+                        blocker.release();
                     }
                 }
+            };
+            server.setDaemon(true);
+            server.start();
+        }
+        serverRequests.release();
+    }
+
+    private void schedule() {
+        assert numbersNotified.size()<=1;
+        if(numbersNotified.size()==1){
+            Object l = numbersNotified.keySet().toArray()[0];
+            Integer N = (Integer)numbersNotified.get(l);
+            if(N!=null && !locks.isHeldByAnyThread(l)){
+                int n = N.intValue();
+                if(n>0){
+                    waitNotifySemaphore.decrement(n);
+                    numbersNotified.remove(l);
+                    blocker.release();
+                    waitNotifySemaphore.acquire();
+                    waitNotifySemaphore.release();
+                    blocker.acquire();
+                }
             }
-            scheduleNext();
-            blocker.release();
         }
+        scheduleNext();
+    }
+
+    // a thread in endBefore makes the scheduling decision itself, so it is counted as ended
+    private boolean isAlive(Thread t){
+        return t.isAlive() && !getThreadBase(t).ended;
     }
 
     public boolean isEnabled(Thread t){
         ThreadBase tb = getThreadBase(t);
-        return (t.isAlive() && tb.enabled && (tb.waitingOn==null || !locks.isHeldByAnyThread(tb.waitingOn)));
+        return (isAlive(t) && tb.enabled && (tb.waitingOn==null || !locks.isHeldByAnyThread(tb.waitingOn)));
     }
 
     public void scheduleNext(){
@@ -447,7 +648,7 @@ public class Scheduler extends Thread {
                         for (Iterator iterator = logicalIdToThread.keySet().iterator(); iterator.hasNext();) {
                             Integer integer = (Integer) iterator.next();
                             Thread t = getThread(integer);
-                            if(t.isAlive()) {
+                            if(isAlive(t)) {
                                 count++;
                             }
                         }
@@ -471,8 +672,9 @@ public class Scheduler extends Thread {
                     }
                 }
             }
-            if(!scheduled){
+            if(!scheduled || deadlock!=null){
                 pe.setThreadId(threadId);
+                if(deadlock!=null) information.returnVal += Cute.EXIT_DEADLOCK;
                 solver.predict();
             } else {
                 pe.setThreadId(threadId);
@@ -482,13 +684,83 @@ public class Scheduler extends Thread {
 
     }
 
+    private static boolean isDependent(long addr1, int type1, long addr2, int type2){
+        return addr1==addr2 && ((type1==LOCK && type2==LOCK)
+                || (type1==WRITE && (type2==READ || type2==WRITE))
+                || (type1==READ && type2==WRITE));
+    }
+
+    /**
+     * Removes from the postponed threads, which act as a sleep set, those
+     * whose next access depends on the access that toSchedule is about to
+     * make: once it is made, running them leads to a different trace.
+     */
+    private void wakeUp(ThreadBase toSchedule){
+        if(toSchedule.toAccessType==NONE) return;
+        for (Iterator iterator = postponed.iterator(); iterator.hasNext();) {
+            ThreadBase tb = getThreadBaseFromId((Integer) iterator.next());
+            if(tb!=null && tb!=toSchedule && isDependent(tb.toAccess,tb.toAccessType,
+                    toSchedule.toAccess,toSchedule.toAccessType)){
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Sets the points to backtrack to that the executions from a state that
+     * is not explored again would have set. An access or acquisition that an
+     * earlier execution made at a step a thread has not taken yet may race
+     * with the last accesses to its location, unless these happen before the
+     * current point of the thread. The locks the thread holds now are not
+     * taken into account, as it may release them before the access.
+     */
+    private void backtrackPruned(){
+        for (Iterator iterator = fingerprints.getOperations().iterator(); iterator.hasNext();) {
+            Fingerprints.Operation op = (Fingerprints.Operation) iterator.next();
+            ThreadBase tb = getThreadBaseFromId(new Integer(op.tid));
+            if(tb!=null && (tb.ended || op.n<tb.events)) continue;
+            if(op.type==LOCK){
+                backtrackPruned(lockMemory.get(op.addr).reads,op.tid,tb);
+            } else {
+                ShadowMemory.Location loc = memory.get(op.addr);
+                backtrackPruned(loc.writes,op.tid,tb);
+                if(op.type==WRITE){
+                    backtrackPruned(loc.reads,op.tid,tb);
+                }
+            }
+        }
+    }
+
+    private void backtrackPruned(ShadowMemory.Accesses a,int by,ThreadBase tb){
+        if(a.tid!=ShadowMemory.Accesses.SHARED){
+            backtrackPruned(a.tid,a.clock,a.index,by,tb);
+            return;
+        }
+        for(int tid=0;tid<a.indexes.length;tid++){
+            if(a.indexes[tid]>=0){
+                backtrackPruned(tid,a.clocks[tid],a.indexes[tid],by,tb);
+            }
+        }
+    }
+
+    private void backtrackPruned(int tid,int clock,int index,int by,ThreadBase tb){
+        if(tid<0 || tid==by || (tb!=null && clock<=tb.getTime(tid))){
+            return;
+        }
+        ScheduleConstraint pe = path.getSchedule(index);
+        Integer thread = new Integer(by);
+        if(!pe.getPostponed().contains(thread)){
+            pe.setRace(true);
+            pe.addBacktrack(thread);
+        }
+    }
+
     public void scheduleNextDirected(){
         int k = path.size();
         int l = history.size();
         boolean scheduled = false;
         ThreadBase toSchedule = null;
         int count = 0;
-        int enabledThreadCount = 0;
         ScheduleConstraint pe;
         Integer threadId = null;
 
@@ -514,7 +786,27 @@ public class Scheduler extends Thread {
                     pe = new ScheduleConstraint();
                     history.add(pe);
                     path.add(pe,true);
+                    if(information.fingerprint && information.searchMode==Globals.SEARCH_DFS
+                            && !fingerprints.add(trace,postponed) && k>0 && information.brackTrackAt<0){
+                        // an earlier execution reached this state, and DFS has
+                        // explored the executions from it since
+                        information.brackTrackAt = k-1;
+                        backtrackPruned();
+                    }
                 }
+                if(k==l-1){
+                    // try the threads that race with this point first
+                    for (Iterator iterator = pe.getBacktrack().iterator(); !scheduled && iterator.hasNext();) {
+                        Integer integer = (Integer) iterator.next();
+                        if(logicalIdToThread.containsKey(integer) && !postponed.contains(integer)
+                                && isEnabled(getThread(integer))){
+                            toSchedule = getThreadBaseFromId(integer);
+                            threadId = integer;
+                            scheduled = true;
+                        }
+                    }
+                }
+                LinkedList enabled = new LinkedList();
                 for (Iterator iterator = logicalIdToThread.keySet().iterator(); iterator.hasNext();) {
                     Integer integer = (Integer) iterator.next();
                     Thread t = getThread(integer);
@@ -525,13 +817,13 @@ public class Scheduler extends Thread {
                             threadId = integer;
                             scheduled = true;
                         }
-                        enabledThreadCount++;
+                        enabled.add(integer);
                     }
-                    if(t.isAlive()) {
+                    if(isAlive(t)) {
                         count++;
                     }
                 }
-                pe.setEnabledThreadCount(enabledThreadCount);
+                pe.setEnabledThreads(enabled);
 
                 if(count==0){
                     pe.setThreadId(threadId);
@@ -553,7 +845,7 @@ public class Scheduler extends Thread {
                 }
             }
 
-            if(!scheduled){
+            if(!scheduled || deadlock!=null){
                 pe.setThreadId(threadId);
                 information.returnVal += Cute.EXIT_DEADLOCK;
                 solver.predict();
@@ -566,7 +858,16 @@ public class Scheduler extends Thread {
                     lastAccessestype = NONE;
                     pe.setPostponed(postponed);
                 }
+                wakeUp(toSchedule);
 
+                if(information.fingerprint){
+                    if(toSchedule.toAccessType!=NONE){
+                        fingerprints.addOperation(toSchedule.tid,toSchedule.events,
+                                toSchedule.toAccessType,toSchedule.toAccess);
+                    }
+                    trace += Fingerprints.access(toSchedule.tid,toSchedule.events++,
+                            toSchedule.toAccessType,toSchedule.toAccess,-1);
+                }
                 pe.setThreadId(threadId);
                 toSchedule.release();
             }
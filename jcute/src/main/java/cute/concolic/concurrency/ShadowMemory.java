@@ -0,0 +1,181 @@
+package cute.concolic.concurrency;
+
+/**
+ * The last accesses of every shared location, in the style of FastTrack:
+ * a location keeps the epochs (thread, clock) of its last write and of its
+ * last read, each of which becomes a per-thread vector only once two
+ * threads access it concurrently. A write only replaces the accesses that
+ * happened before it. Each access also keeps the index of its
+ * schedule in the path and the locks that were held, as a bitset over the
+ * logical ids of the locks, so that the scheduler can mark races for
+ * backtracking.
+ * <p>
+ * The locations are kept in an open addressing table keyed by the address
+ * of the location, so that no Long is allocated on an access.
+ */
+public class ShadowMemory {
+    private long[] keys = new long[256];
+    private Location[] values = new Location[256];
+    private int size = 0;
+
+    /**
+     * The last accesses of one kind to a location: the epoch of the last
+     * access, which becomes a per-thread vector only once two threads access
+     * the location concurrently.
+     */
+    public static class Accesses {
+        /** the thread of the last access, -1, or SHARED */
+        int tid = -1;
+        int clock;
+        int index;
+        long[] locks;
+
+        /** the last access of each thread, once SHARED; indexes[t] is -1 if t did not access */
+        int[] clocks;
+        int[] indexes;
+        long[][] lockSets;
+
+        static final int SHARED = -2;
+
+        /**
+         * Records an access of tb. The access is kept as a single epoch if
+         * the previous access happened before it, that is, if its clock for
+         * the previous thread is at least the clock of that access.
+         */
+        void add(ThreadBase tb, int clock, int index, long[] locks) {
+            int t = tb.tid;
+            if (tid != SHARED) {
+                if (tid == -1 || tid == t || this.clock <= tb.getTime(tid)) {
+                    tid = t;
+                    this.clock = clock;
+                    this.index = index;
+                    this.locks = locks;
+                    return;
+                }
+                int n = Math.max(t, tid) + 1;
+                clocks = new int[n];
+                indexes = new int[n];
+                lockSets = new long[n][];
+                for (int i = 0; i < n; i++) {
+                    indexes[i] = -1;
+                }
+                clocks[tid] = this.clock;
+                indexes[tid] = this.index;
+                lockSets[tid] = this.locks;
+                tid = SHARED;
+                this.locks = null;
+            }
+            if (t >= indexes.length) {
+                int n = Math.max(t + 1, 2 * indexes.length);
+                int[] clocks2 = new int[n];
+                int[] indexes2 = new int[n];
+                long[][] lockSets2 = new long[n][];
+                System.arraycopy(clocks, 0, clocks2, 0, clocks.length);
+                System.arraycopy(indexes, 0, indexes2, 0, indexes.length);
+                System.arraycopy(lockSets, 0, lockSets2, 0, lockSets.length);
+                for (int i = indexes.length; i < n; i++) {
+                    indexes2[i] = -1;
+                }
+                clocks = clocks2;
+                indexes = indexes2;
+                lockSets = lockSets2;
+            }
+            clocks[t] = clock;
+            indexes[t] = index;
+            lockSets[t] = locks;
+        }
+
+        /**
+         * Forgets the accesses that happened before the current point of
+         * tb. A lock is only checked as a lockset, and orders nothing, so
+         * the accesses that are concurrent with tb are kept, even if tb
+         * holds a lock they held.
+         */
+        void removeBefore(ThreadBase tb) {
+            if (tid != SHARED) {
+                if (tid != -1 && (tid == tb.tid || clock <= tb.getTime(tid))) {
+                    tid = -1;
+                    locks = null;
+                }
+                return;
+            }
+            int left = 0;
+            int last = -1;
+            for (int t = 0; t < indexes.length; t++) {
+                if (indexes[t] < 0) {
+                    continue;
+                }
+                if (t == tb.tid || clocks[t] <= tb.getTime(t)) {
+                    indexes[t] = -1;
+                    lockSets[t] = null;
+                } else {
+                    left++;
+                    last = t;
+                }
+            }
+            if (left <= 1) {
+                tid = last;
+                if (last >= 0) {
+                    clock = clocks[last];
+                    index = indexes[last];
+                    locks = lockSets[last];
+                }
+                clocks = null;
+                indexes = null;
+                lockSets = null;
+            }
+        }
+    }
+
+    public static class Location {
+        final Accesses writes = new Accesses();
+        final Accesses reads = new Accesses();
+
+        /** the number of writes to the location, or of acquisitions of the lock */
+        int version;
+    }
+
+    private static int hash(long addr) {
+        int h = (int) (addr ^ (addr >>> 32)) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the location at addr, which is created on its first access.
+     */
+    public Location get(long addr) {
+        int mask = keys.length - 1;
+        int i = hash(addr) & mask;
+        while (values[i] != null) {
+            if (keys[i] == addr) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        Location loc = new Location();
+        keys[i] = addr;
+        values[i] = loc;
+        if (++size * 2 > keys.length) {
+            resize();
+        }
+        return loc;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        Location[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new Location[oldValues.length * 2];
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] != null) {
+                int i = hash(oldKeys[j]) & mask;
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+}
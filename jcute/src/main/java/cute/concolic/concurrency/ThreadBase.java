@@ -1,173 +1,233 @@
 package cute.concolic.concurrency;
 
 import cute.concolic.concurrency.Scheduler;
-import cute.concolic.concurrency.Semaphore;
 
-import java.util.IdentityHashMap;
-import java.util.Iterator;
-import java.util.Vector;
-import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Author: Koushik Sen <ksen@cs.uiuc.edu>
  */
-public class ThreadBase extends Semaphore {
+public class ThreadBase {
     public Object waitingOn=null;
+    /** the thread this one joins, if it is blocked in join */
+    public ThreadBase joining=null;
     public boolean enabled=true;
-    public IdentityHashMap vc;
-    private Vector locks;
+    public boolean ended=false;
+    /** the vector clock, indexed by the logical id of the scheduler */
+    public int[] vc;
+    /** the records of the locks held, in the order they were acquired */
+    private LockCount[] held = new LockCount[4];
+    private int nHeld = 0;
+    /** the locks held, as a bitset over the logical ids of the locks */
+    private long[] heldBits = new long[1];
+    /** the count of the lock released by a wait, given back when it returns */
+    int waitCount;
     public long toAccess;
     public int toAccessType;
     public Thread thread;
+    public final int tid;
+    /** the number of times this thread was scheduled */
+    public int events=0;
 
 
-    public ThreadBase(Thread t){
-        vc = new IdentityHashMap();
-        locks = new Vector();
-        lastRaceAt = new HashMap();
+    public ThreadBase(Thread t, int tid){
+        vc = new int[tid+1];
+        lastRaceAt = new int[0];
         toAccessType = Scheduler.NONE;
         thread = t;
+        this.tid = tid;
     }
 
-    public void setVc(IdentityHashMap vc2){
-        vc.clear();
-        vc.putAll(vc2);
+    private void ensureVc(int n){
+        if(vc.length<n){
+            int[] tmp = new int[Math.max(n,2*vc.length)];
+            System.arraycopy(vc,0,tmp,0,vc.length);
+            vc = tmp;
+        }
     }
 
-    public IdentityHashMap getVc() {
-        return vc;
+    public void setVc(int[] vc2){
+        ensureVc(vc2.length);
+        System.arraycopy(vc2,0,vc,0,vc2.length);
+        for(int i=vc2.length;i<vc.length;i++){
+            vc[i] = 0;
+        }
     }
 
-    public void addOneToVc(Thread t){
-        Integer time = (Integer)vc.get(t);
-        if(time==null){
-            vc.put(t,new Integer(1));
-        } else {
-            vc.put(t,new Integer(time.intValue()+1));
-        }
+    public int[] getVc() {
+        return vc;
     }
 
     public void addOneToVc(){
-        Thread t = Thread.currentThread();
-        Integer time = (Integer)vc.get(t);
-        if(time==null){
-            vc.put(t,new Integer(1));
-        } else {
-            vc.put(t,new Integer(time.intValue()+1));
-        }
+        ensureVc(tid+1);
+        vc[tid]++;
     }
 
-    public int getTime(Thread t){
-        Integer time = (Integer)vc.get(t);
-        if(time==null){
-            return 0;
-        } else {
-            return time.intValue();
-        }
+    public int getTime(int t){
+        return t<vc.length?vc[t]:0;
     }
 
-    public void putTime(Thread t,int time){
-        if(time==0){
-            vc.remove(t);
-        } else {
-            vc.put(t,new Integer(time));
-        }
+    public void putTime(int t,int time){
+        ensureVc(t+1);
+        vc[t] = time;
     }
 
 
-    public void maxVc(IdentityHashMap vc2){
+    public void maxVc(int[] vc2){
         if(vc2==null) return;
-        for (Iterator iterator = vc2.keySet().iterator(); iterator.hasNext();) {
-            Thread t = (Thread) iterator.next();
-            int time2 = ((Integer)vc2.get(t)).intValue();
-            int time1 = getTime(t);
-            if(time2>time1){
-                putTime(t,time2);
+        ensureVc(vc2.length);
+        for(int i=0;i<vc2.length;i++){
+            if(vc2[i]>vc[i]){
+                vc[i] = vc2[i];
             }
         }
     }
 
-    public boolean isLE(IdentityHashMap vc2){
-        for (Iterator iterator = vc.keySet().iterator(); iterator.hasNext();) {
-            Thread t1 = (Thread) iterator.next();
-            Integer time2 = (Integer)vc2.get(t1);
-            int ltime2;
-            if(time2==null){
-                ltime2 = 0;
-            } else {
-                ltime2 = time2.intValue();
-            }
-            if(getTime(t1)>ltime2){
+    public boolean isLE(int[] vc2){
+        for(int i=0;i<vc.length;i++){
+            if(vc[i]>(i<vc2.length?vc2[i]:0)){
                 return false;
             }
         }
         return true;
     }
 
-    public boolean isGE(IdentityHashMap vc2){
-        for (Iterator iterator = vc2.keySet().iterator(); iterator.hasNext();) {
-            Thread t2 = (Thread) iterator.next();
-            Integer time2 = (Integer)vc2.get(t2);
-            int ltime2;
-            if(time2==null){
-                ltime2 = 0;
-            } else {
-                ltime2 = time2.intValue();
-            }
-            if(ltime2>getTime(t2))
+    public boolean isGE(int[] vc2){
+        for(int i=0;i<vc2.length;i++){
+            if(vc2[i]>(i<vc.length?vc[i]:0)){
                 return false;
+            }
         }
         return true;
     }
 
-    public boolean isIndependent(IdentityHashMap vc2){
-        return !isLE(vc2) && !isGE(vc2);
+    public boolean isIndependent(int[] vc2){
+        boolean le = true;
+        boolean ge = true;
+        int n = Math.max(vc.length,vc2.length);
+        for(int i=0;i<n;i++){
+            int t1 = i<vc.length?vc[i]:0;
+            int t2 = i<vc2.length?vc2[i]:0;
+            if(t1>t2){
+                if(!ge) return true;
+                le = false;
+            } else if(t1<t2){
+                if(!le) return true;
+                ge = false;
+            }
+        }
+        return false;
+    }
+
+    // the permits to run, handed over by the thread that schedules this one
+    private final AtomicInteger permits = new AtomicInteger();
+
+    public void release(){
+        permits.incrementAndGet();
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Parks the thread until it is scheduled. Only the thread itself waits
+     * on its ThreadBase.
+     */
+    public void acquire(){
+        while(permits.get()<=0){
+            LockSupport.park(this);
+            if(Thread.interrupted()){
+                new InterruptedException().printStackTrace();
+                System.exit(1);
+            }
+        }
+        permits.decrementAndGet();
     }
 
     public void enableAll() {
         waitingOn = null;
+        joining = null;
         enabled = true;
     }
 
-    public Vector getLocks() {
-        return locks;
+    int getLockCount(){
+        return nHeld;
+    }
+
+    LockCount getLock(int i){
+        return held[i];
     }
 
-    public boolean intersects(Vector locks) {
-        for (Iterator iterator = locks.iterator(); iterator.hasNext();) {
-            Object o = iterator.next();
-            for (Iterator iterator1 = this.locks.iterator(); iterator1.hasNext();) {
-                Object o1 = iterator1.next();
-                if(o1==o){
-                    return true;
-                }
+    public boolean intersects(long[] locks) {
+        if(locks==null) return false;
+        int n = Math.min(locks.length,heldBits.length);
+        for (int i = 0; i < n; i++) {
+            if((locks[i]&heldBits[i])!=0){
+                return true;
             }
         }
         return false;
     }
 
-    public void addLock(Object l){
-        locks.add(l);
+    private static final long[] EMPTY = new long[0];
+    private long[] lockSet = EMPTY;
+
+    /**
+     * @return the locks held, as a bitset that is shared by all accesses
+     * until the locks held change.
+     */
+    public long[] getLockSet(){
+        if(lockSet==null){
+            lockSet = nHeld==1?held[0].single:(long[])heldBits.clone();
+        }
+        return lockSet;
+    }
+
+    void addLock(LockCount lc){
+        if(nHeld==held.length){
+            LockCount[] tmp = new LockCount[2*nHeld];
+            System.arraycopy(held,0,tmp,0,nHeld);
+            held = tmp;
+        }
+        held[nHeld++] = lc;
+        if(lc.single.length>heldBits.length){
+            long[] tmp = new long[lc.single.length];
+            System.arraycopy(heldBits,0,tmp,0,heldBits.length);
+            heldBits = tmp;
+        }
+        heldBits[lc.id>>6] |= lc.single[lc.id>>6];
+        lockSet = null;
     }
 
     public void removeLock(){
-        locks.remove(locks.size()-1);
+        LockCount lc = held[--nHeld];
+        held[nHeld] = null;
+        heldBits[lc.id>>6] &= ~lc.single[lc.id>>6];
+        lockSet = nHeld==0?EMPTY:null;
     }
 
-    private HashMap lastRaceAt;
+    private int[] lastRaceAt;
 
-    public int getLastRaceAt(Integer tid) {
-        Integer index = (Integer)lastRaceAt.get(tid);
-        if(index==null) return -1;
-        else return index.intValue();
+    public int getLastRaceAt(int tid) {
+        if(tid>=lastRaceAt.length) return -1;
+        else return lastRaceAt[tid];
     }
 
-    public void setLastRaceAt(Integer tid, int index) {
-        lastRaceAt.put(tid,new Integer(index));
+    public void setLastRaceAt(int tid, int index) {
+        if(tid>=lastRaceAt.length){
+            int[] tmp = new int[Math.max(tid+1,2*lastRaceAt.length)];
+            System.arraycopy(lastRaceAt,0,tmp,0,lastRaceAt.length);
+            for(int i=lastRaceAt.length;i<tmp.length;i++){
+                tmp[i] = -1;
+            }
+            lastRaceAt = tmp;
+        }
+        lastRaceAt[tid] = index;
     }
 
     public void removeAllLocks() {
-        locks.setSize(0);
+        while(nHeld>0){
+            removeLock();
+        }
     }
 
     public Thread getThread() {
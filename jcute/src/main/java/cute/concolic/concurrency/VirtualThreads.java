@@ -0,0 +1,56 @@
+package cute.concolic.concurrency;
+
+import java.lang.reflect.Method;
+
+/**
+ * Creates virtual threads through reflection, so that jCUTE still builds and
+ * runs on JVMs without them, where the target threads stay platform threads.
+ * <p>
+ * Before Java 24, a virtual thread that parks inside synchronized code pins
+ * its carrier. The threads of the program park in the scheduler while they
+ * hold monitors, so with more such threads than carriers the thread that is
+ * scheduled may never run. Virtual threads are then not used either.
+ * <p>
+ * The Thread object of the program is never started; the virtual thread
+ * runs it in its place (see Scheduler.start). The instrumentation redirects
+ * currentThread, isAlive, getState, interrupt and isInterrupted to the
+ * thread that runs it. Waiting on the Thread object itself for the end of
+ * the thread, as Thread.join does inside, is not supported, since the
+ * Thread object never ends.
+ */
+public class VirtualThreads {
+    private static Object builder;
+    private static Method unstarted;
+
+    static {
+        if (Runtime.version().feature() >= 24) {
+            try {
+                builder = Thread.class.getMethod("ofVirtual", new Class[0]).invoke(null, new Object[0]);
+                unstarted = Class.forName("java.lang.Thread$Builder")
+                        .getMethod("unstarted", new Class[]{Runnable.class});
+            } catch (Exception e) {
+                builder = null;
+                unstarted = null;
+            }
+        }
+    }
+
+    public static boolean isAvailable() {
+        return unstarted != null;
+    }
+
+    /**
+     * @return a virtual thread, not started yet, that runs r, or null, if
+     * the JVM has no virtual threads.
+     */
+    public static Thread unstarted(Runnable r) {
+        if (unstarted == null) {
+            return null;
+        }
+        try {
+            return (Thread) unstarted.invoke(builder, new Object[]{r});
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
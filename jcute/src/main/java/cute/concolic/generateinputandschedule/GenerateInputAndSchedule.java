@@ -3,6 +3,7 @@ package cute.concolic.generateinputandschedule;
 import cute.Cute;
 import cute.concolic.Globals;
 import cute.concolic.Information;
+import cute.concolic.concurrency.Fingerprints;
 import cute.concolic.input.InputMap;
 import cute.concolic.logging.BranchCoverageLog;
 import cute.concolic.logging.ExecutionLog;
@@ -30,13 +31,14 @@ public class GenerateInputAndSchedule {
     public JUnitTestGenerator junitTest;
     public Random rand;
     public BranchCoverageLog coverage;
+    private Fingerprints fingerprints;
 
 
     public GenerateInputAndSchedule(Information information, InputMap input,
                                     PathConstraint path, BranchHistory history,
                                     ExecutionLog ptrace, Logger logger,
                                     JUnitTestGenerator junitTest, Random rand,
-                                    BranchCoverageLog coverage) {
+                                    BranchCoverageLog coverage, Fingerprints fingerprints) {
         this.information = information;
         this.input = input;
         this.path = path;
@@ -46,6 +48,7 @@ public class GenerateInputAndSchedule {
         this.junitTest = junitTest;
         this.rand = rand;
         this.coverage = coverage;
+        this.fingerprints = fingerprints;
     }
 
     private int findDepth() {
@@ -127,6 +130,7 @@ public class GenerateInputAndSchedule {
                 (new File(Globals.NEW + "Branches")).delete();
                 (new File(Globals.NEW + "Inputs")).delete();
                 (new File(Globals.NEW + "Counter")).delete();
+                (new File(Fingerprints.file)).delete();
                 coverage.write();
                 information.returnVal = Cute.EXIT_COMPLETE + information.returnVal;
                 return;
@@ -167,14 +171,17 @@ public class GenerateInputAndSchedule {
             }
             DSchedule ds = path.getDSchedule(i);
             if (ds != null) {
-                if (ds.nextPid != -1) {
+                if (information.optimalDistributed) {
+                    if (ds.nextBacktrack()) {
+                        writeHistoryAndInput(i);
+                        return;
+                    }
+                } else if (ds.nextPid != -1) {
                     if (ds.pid == ds.nextPid) {
                         ds.mid = ds.nextMid;
                         writeHistoryAndInput(i);
                         return;
                     } else if (ds.isRace) {
-                        if (information.optimalDistributed)
-                            ds.isRace = false;
                         ds.pid = ds.nextPid;
                         ds.mid = ds.nextMid;
                         writeHistoryAndInput(i);
@@ -239,14 +246,17 @@ public class GenerateInputAndSchedule {
             }
             DSchedule ds = path.getDSchedule(i);
             if (ds != null && b) {
-                if (ds.nextPid != -1) {
+                if (information.optimalDistributed) {
+                    if (ds.nextBacktrack()) {
+                        writeHistoryAndInput(i);
+                        return;
+                    }
+                } else if (ds.nextPid != -1) {
                     if (ds.pid == ds.nextPid) {
                         ds.mid = ds.nextMid;
                         writeHistoryAndInput(i);
                         return;
                     } else if (ds.isRace) {
-                        if (information.optimalDistributed)
-                            ds.isRace = false;
                         ds.pid = ds.nextPid;
                         ds.mid = ds.nextMid;
                         writeHistoryAndInput(i);
@@ -347,14 +357,17 @@ public class GenerateInputAndSchedule {
             }
             DSchedule ds = path.getDSchedule(i);
             if (ds != null) {
-                if (ds.nextPid != -1) {
+                if (information.optimalDistributed) {
+                    if (ds.nextBacktrack()) {
+                        writeHistoryAndInput(i);
+                        return;
+                    }
+                } else if (ds.nextPid != -1) {
                     if (ds.pid == ds.nextPid) {
                         ds.mid = ds.nextMid;
                         writeHistoryAndInput(i);
                         return;
                     } else if (ds.isRace) {
-                        if (information.optimalDistributed)
-                            ds.isRace = false;
                         ds.pid = ds.nextPid;
                         ds.mid = ds.nextMid;
                         writeHistoryAndInput(i);
@@ -365,19 +378,36 @@ public class GenerateInputAndSchedule {
         }
     }
 
+    /**
+     * In concrete mode there is no path constraint to solve. The inputs of
+     * a run that increased coverage are kept, so that a later concolic run
+     * (without -c) starts from them.
+     */
+    private void predictConcrete() {
+        if (coverage.isIncremented()) {
+            input.write();
+            (new File(Globals.NEW + "Branches")).delete();
+            (new File(Globals.NEW + "Counter")).delete();
+        }
+        coverage.write();
+    }
+
     synchronized public void predict() {
         if (information.mode != Globals.REPLAY_MODE) {
             if (!information.solved) {
                 information.solved = true;
                 if ((information.debugLevel & 64) != 0) logger.info(64, "Old Branch History", history);
                 if ((information.debugLevel & 128) != 0) logger.info(128, "Old Input", input);
-                if (information.searchMode == Globals.SEARCH_RANDOM) {
+                if (information.concreteOnly) {
+                    predictConcrete();
+                } else if (information.searchMode == Globals.SEARCH_RANDOM) {
                     predictRandom();
                     coverage.write();
                 } else if (information.searchMode == Globals.SEARCH_RANDOM2) {
                     predictRandom2();
                     coverage.write();
                 } else if (information.searchMode == Globals.SEARCH_DFS) {
+                    fingerprints.write();
                     predictDirected();
                     coverage.write();
                 } else if (information.searchMode == Globals.SEARCH_QUICK) {
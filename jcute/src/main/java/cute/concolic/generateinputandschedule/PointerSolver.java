@@ -6,12 +6,19 @@ import cute.concolic.input.InputMap;
 
 /**
  * Author: Koushik Sen <ksen@cs.uiuc.edu>
+ *
+ * The pointers that must be equal are kept as a union-find over the
+ * symbolic pointer inputs, with 0 standing for null. The pointers that must
+ * be inequal are kept as a list, per class, of the pointers of other
+ * classes, and the lists are merged small into large on a union.
  */
 public class PointerSolver {
     private PathConstraint path;
     private InputMap input;
-    public int[] nodes;
-    private boolean [][] edges;
+    private int[] parent;
+    private int[] rank;
+    private int[][] inequal;
+    private int[] nInequal;
 
     public PointerSolver(PathConstraint path, InputMap input) {
         this.path = path;
@@ -19,72 +26,119 @@ public class PointerSolver {
     }
 
     public void initDependency(){
-        int i,j;
+        int n = input.nSymbolicPointerInputValues()+1;
+        parent = new int[n];
+        rank = new int[n];
+        inequal = new int[n][];
+        nInequal = new int[n];
+        for (int i=0;i<n;i++) {
+            parent[i]=i;
+        }
+    }
+
+    /**
+     * @return the number of pointers, including null.
+     */
+    public int size(){
+        return parent.length;
+    }
 
-        nodes = new int[input.nSymbolicPointerInputValues()+1];
-        for (i=0;i<nodes.length;i++) {
-            nodes[i]=i;
+    private int find(int x){
+        int root = x;
+        while(parent[root]!=root){
+            root = parent[root];
         }
-        edges = new boolean [nodes.length][nodes.length];
-        for (i=0;i<nodes.length;i++) {
-            for (j=0;j<nodes.length;j++) {
-                edges[i][j]=false;
-            }
+        while(parent[x]!=root){
+            int next = parent[x];
+            parent[x] = root;
+            x = next;
         }
+        return root;
     }
 
     public boolean isOkInequal(int first, int second) {
-        int i,j;
-        i = nodes[first];
-        j = nodes[second];
-        return(i!=j);
+        return find(first)!=find(second);
     }
 
 
     public boolean isOkEqual(int first, int second) {
-        int i,j;
-        i = nodes[first];
-        j = nodes[second];
-        return !(edges[i][j]);
+        int i = find(first);
+        int j = find(second);
+        if (i==j) {
+            return true;
+        }
+        if (nInequal[j]<nInequal[i]) {
+            int tmp = i;
+            i = j;
+            j = tmp;
+        }
+        int[] l = inequal[i];
+        for (int k=0;k<nInequal[i];k++) {
+            if (find(l[k])==j) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    public void addEqual(int first, int second) {
-        int k,i,j,tmp;
-
-        i = nodes[first];
-        j = nodes[second];
-        if (edges[i][j]) {
-            System.err.println("Pointers "+first+" "+second+" are already inequal; they cannot be made equal");
-            System.exit(1);
+    /**
+     * @return false, if first and second are already inequal.
+     */
+    public boolean addEqual(int first, int second) {
+        if (!isOkEqual(first,second)) {
+            return false;
         }
+        int i = find(first);
+        int j = find(second);
         if (i!=j) {
-            if (j<i) {
-                tmp = j;
-                j=i;
-                i = tmp;
+            if (rank[i]<rank[j]) {
+                int tmp = i;
+                i = j;
+                j = tmp;
+            } else if (rank[i]==rank[j]) {
+                rank[i]++;
             }
-            for (k=1;k<nodes.length;k++) {
-                if (nodes[k]==j) {
-                    nodes[k]=i;
-                }
-                edges[i][k]=edges[j][k] || edges[i][k];
-                edges[k][i]=edges[k][j] || edges[i][k];
+            parent[j] = i;
+            if (nInequal[i]<nInequal[j]) {
+                int[] l = inequal[i];
+                int n = nInequal[i];
+                inequal[i] = inequal[j];
+                nInequal[i] = nInequal[j];
+                inequal[j] = l;
+                nInequal[j] = n;
+            }
+            for (int k=0;k<nInequal[j];k++) {
+                addToInequal(i,inequal[j][k]);
             }
+            inequal[j] = null;
+            nInequal[j] = 0;
         }
+        return true;
     }
 
-    public void addInequal(int first, int second) {
-        int i,j;
-
-        i = nodes[first];
-        j = nodes[second];
+    /**
+     * @return false, if first and second are already equal.
+     */
+    public boolean addInequal(int first, int second) {
+        int i = find(first);
+        int j = find(second);
         if (i==j) {
-            System.err.println("Pointers "+first+" "+second+" are already equal; they cannot be made inequal");
-            System.exit(1);
-        } else {
-            edges[i][j]=true;
-            edges[j][i]=true;
+            return false;
         }
+        addToInequal(i,j);
+        addToInequal(j,i);
+        return true;
+    }
+
+    private void addToInequal(int i, int j){
+        if (inequal[i]==null) {
+            inequal[i] = new int[4];
+        } else if (nInequal[i]==inequal[i].length) {
+            int[] l = new int[2*nInequal[i]];
+            System.arraycopy(inequal[i],0,l,0,nInequal[i]);
+            inequal[i] = l;
+        }
+        inequal[i][nInequal[i]++] = j;
     }
 
     public boolean isEqual(int first, int second){
@@ -110,12 +164,10 @@ public class PointerSolver {
                     } else if (!tmp.equal && !isOkEqual(tmp.first,tmp.second)) {
                         return false;
                     }
-                } else {
-                    if (tmp.equal) {
-                        addEqual(tmp.first,tmp.second);
-                    } else {
-                        addInequal(tmp.first,tmp.second);
-                    }
+                } else if (tmp.equal ? !addEqual(tmp.first,tmp.second)
+                        : !addInequal(tmp.first,tmp.second)) {
+                    // the prefix of the path is unsatisfiable
+                    return false;
                 }
             }
         }
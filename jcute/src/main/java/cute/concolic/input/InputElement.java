@@ -25,17 +25,6 @@ public class InputElement implements Serializable {
         this.id = id;
     }
 
-    public InputElement makeSerializable() {
-        InputElement ret = new InputElement(val,next,type,id);
-        if(next!=null){
-            ret.next = new ReferenceObject(((InputElement)next).id);
-        }
-        if(type == Globals.REFERENCE && val!=null && val instanceof InputElement){
-            ret.val = new ReferenceObject(((InputElement)val).id);
-        }
-        return  ret;
-    }
-
     public void print(PrintWriter out) {
         out.println("id = " + id);
         if(next==null){
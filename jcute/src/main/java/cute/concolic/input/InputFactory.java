@@ -0,0 +1,131 @@
+package cute.concolic.input;
+
+import cute.concolic.Globals;
+import cute.instrument.SymbolTable;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Holds what InputMap needs to build object inputs of a class: the class,
+ * its no-argument constructor, and the fields that are given inputs, with
+ * their type and symbol table id.
+ * <p>
+ * The reflective lookups are done once per class and execution. Every
+ * iteration of jCUTE runs in a new JVM, so nothing is reused across
+ * iterations. The factories only pay off within one execution, for classes
+ * that many object inputs are built of, e.g. the nodes of an input list.
+ */
+public class InputFactory {
+    private static HashMap byName = new HashMap();
+    private static HashMap byClass = new HashMap();
+
+    final Class c;
+    final boolean instantiable;
+    final boolean custom;
+    private Constructor constructor;
+    /** the fields that are given inputs */
+    final Field[] fields;
+    /** the Globals type of each field, Globals.REFERENCE, or 0 for interfaces */
+    final int[] types;
+    /** the type of each field, as written by JUnitTestGenerator */
+    final String[] typeNames;
+    private int[] ids;
+    private SymbolTable idsOf;
+
+    private InputFactory(Class c) {
+        this.c = c;
+        int cmod = c.getModifiers();
+        instantiable = !Modifier.isAbstract(cmod) && !Modifier.isInterface(cmod);
+        custom = CustomInitializer.getNewInstance(c, false, null) != null;
+        try {
+            // only a public constructor, as the generated tests call new T()
+            constructor = c.getConstructor(new Class[0]);
+            if (Modifier.isPublic(cmod)) {
+                // skips the access check on every call, which always passes
+                constructor.setAccessible(true);
+            }
+        } catch (Exception e) {
+            constructor = null;
+        }
+        ArrayList fs = new ArrayList();
+        ArrayList ts = new ArrayList();
+        ArrayList ns = new ArrayList();
+        Field[] field = c.getFields();
+        for (int i = 0; i < field.length; i++) {
+            int mod = field[i].getModifiers();
+            if (Modifier.isPrivate(mod) || Modifier.isProtected(mod)
+                    || Modifier.isStatic(mod) || Modifier.isFinal(mod)) {
+                continue;
+            }
+            String type = field[i].getType().toString();
+            int t = typeOf(type);
+            fs.add(field[i]);
+            ts.add(new Integer(t));
+            ns.add(t == Globals.REFERENCE ? type.substring(6) : type);
+        }
+        fields = (Field[]) fs.toArray(new Field[fs.size()]);
+        types = new int[ts.size()];
+        typeNames = (String[]) ns.toArray(new String[ns.size()]);
+        for (int i = 0; i < types.length; i++) {
+            types[i] = ((Integer) ts.get(i)).intValue();
+        }
+    }
+
+    private static int typeOf(String type) {
+        if (type.equals("int")) return Globals.INT;
+        if (type.equals("short")) return Globals.SHORT;
+        if (type.equals("byte")) return Globals.BYTE;
+        if (type.equals("char")) return Globals.CHAR;
+        if (type.equals("long")) return Globals.LONG;
+        if (type.equals("boolean")) return Globals.BOOLEAN;
+        if (type.equals("float")) return Globals.FLOAT;
+        if (type.equals("double")) return Globals.DOUBLE;
+        if (type.startsWith("class")) return Globals.REFERENCE;
+        return 0;
+    }
+
+    public static synchronized InputFactory get(Class c) {
+        InputFactory f = (InputFactory) byClass.get(c);
+        if (f == null) {
+            f = new InputFactory(c);
+            byClass.put(c, f);
+        }
+        return f;
+    }
+
+    public static synchronized InputFactory get(String className) throws ClassNotFoundException {
+        InputFactory f = (InputFactory) byName.get(className);
+        if (f == null) {
+            f = get(Class.forName(className));
+            byName.put(className, f);
+        }
+        return f;
+    }
+
+    /**
+     * @return the symbol table id of each field in st.
+     */
+    synchronized int[] getIds(SymbolTable st) {
+        if (idsOf != st) {
+            ids = new int[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                ids[i] = st.get(fields[i].getName());
+            }
+            idsOf = st;
+        }
+        return ids;
+    }
+
+    Object newInstance() throws InstantiationException, IllegalAccessException,
+            InvocationTargetException {
+        if (constructor == null) {
+            return c.newInstance();
+        }
+        return constructor.newInstance(new Object[0]);
+    }
+}
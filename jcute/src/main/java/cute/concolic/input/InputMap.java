@@ -2,6 +2,7 @@ package cute.concolic.input;
 
 import cute.concolic.Call;
 import cute.concolic.Globals;
+import cute.concolic.ObjectIds;
 import cute.concolic.Information;
 import cute.concolic.generateinputandschedule.PointerSolver;
 import cute.concolic.logging.ExecutionLog;
@@ -11,10 +12,15 @@ import cute.concolic.logging.Printable;
 import cute.concolic.symbolicstate.*;
 import cute.instrument.SymbolTable;
 
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
 import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Random;
@@ -29,7 +35,6 @@ public class InputMap implements Printable {
     public InputElement input=null;
     public InputElement currInput = null;
     private InputElement prevInput = null;
-    public Vector symbolicArithInputValue;
 
     private Information information;
     private Logger logger;
@@ -50,93 +55,177 @@ public class InputMap implements Printable {
         this.rand = rand;
     }
 
+    /*
+     * The symbolic inputs of the current execution, indexed by their
+     * variable number minus one. The type and the current value of each
+     * arithmetic input are also kept unboxed, so that the solver reads them
+     * without going through the InputElement.
+     */
+    private InputElement[] arithInputs = new InputElement[64];
+    private int[] arithTypes = new int[64];
+    private double[] arithValues = new double[64];
+    private int nArithInputs = 0;
+    private InputElement[] pointerInputs = new InputElement[64];
+    private int nPointerInputs = 0;
+    /** the hash of the input values given to the program so far */
+    private long inputHash = 0;
+
+    /**
+     * @return the hash of the input values given to the program so far in
+     * this execution, whether they were read from the inputs file or
+     * generated, as random values are with -r.
+     */
+    public long getInputHash(){
+        return inputHash;
+    }
+
+    private void hashInput(long h){
+        inputHash = 31*inputHash+h;
+    }
+
+    /**
+     * @return a hash of the object o that is the same in every execution.
+     * Objects are only told apart by their class, as their own hash may be
+     * their identity.
+     */
+    private static long typeTag(Object o){
+        return o==null ? 0 : o instanceof AnyObject ? 1 : o.getClass().getName().hashCode();
+    }
+
     public int nSymbolicArithInputValues(){
-        return symbolicArithInputValue.size();
+        return nArithInputs;
     }
 
     public int putAndGetArithExpression(InputElement val) {
-        int x = nSymbolicArithInputValues()+1;
-        symbolicArithInputValue.add(val);
-        return x;
+        if(nArithInputs==arithInputs.length){
+            int len = 2*nArithInputs;
+            InputElement[] inputs = new InputElement[len];
+            int[] types = new int[len];
+            double[] values = new double[len];
+            System.arraycopy(arithInputs,0,inputs,0,nArithInputs);
+            System.arraycopy(arithTypes,0,types,0,nArithInputs);
+            System.arraycopy(arithValues,0,values,0,nArithInputs);
+            arithInputs = inputs;
+            arithTypes = types;
+            arithValues = values;
+        }
+        arithInputs[nArithInputs] = val;
+        arithTypes[nArithInputs] = val.type;
+        arithValues[nArithInputs] = (val.val instanceof FunctionExpression)?0.0:toDouble(val.type,val.val);
+        return ++nArithInputs;
     }
 
+    private static double toDouble(int type, Object val) {
+        switch(type){
+            case Globals.CHAR:
+                return ((Character)val).charValue();
+            case Globals.BOOLEAN:
+                return ((Boolean)val).booleanValue()?1.0:0.0;
+            case Globals.INT:
+            case Globals.SHORT:
+            case Globals.LONG:
+            case Globals.BYTE:
+            case Globals.FLOAT:
+            case Globals.DOUBLE:
+                return ((Number)val).doubleValue();
+        }
+        System.exit(1);
+        return 0.0;
+    }
+
+    /**
+     * Sets the j-th arithmetic input to the solution v. An input that the
+     * solution leaves as it is keeps its boxed value.
+     */
     public void updateArithInput(int j, double v) {
-        InputElement tmp = (InputElement)(symbolicArithInputValue.get(j-1));
+        InputElement tmp = arithInputs[j-1];
         if(tmp.val instanceof FunctionExpression){
+            arithValues[j-1] = v;
             ((FunctionExpression)tmp.val).solve(v,this);
         } else {
-            switch(tmp.type){
+            double r = v+(v>0.1?0.2:-0.2);
+            double d;
+            switch(arithTypes[j-1]){
                 case Globals.INT:
-                    tmp.val = new Integer((int)(v+(v>0.1?0.2:-0.2)));
+                    d = (int)r;
                     break;
                 case Globals.SHORT:
-                    tmp.val = new Short((short)(v+(v>0.1?0.2:-0.2)));
+                    d = (short)r;
                     break;
                 case Globals.LONG:
-                    tmp.val = new Long((long)(v+(v>0.1?0.2:-0.2)));
+                    d = (long)r;
                     break;
                 case Globals.BYTE:
-                    tmp.val = new Byte((byte)(v+(v>0.1?0.2:-0.2)));
+                    d = (byte)r;
                     break;
                 case Globals.CHAR:
-                    tmp.val = new Character((char)(v+(v>0.1?0.2:-0.2)));
+                    d = (char)r;
                     break;
                 case Globals.BOOLEAN:
-                    tmp.val = new Boolean(v>0.5);
+                    d = v>0.5?1.0:0.0;
                     break;
                 case Globals.FLOAT:
-                    tmp.val = new Float((float)v);
+                    d = (float)v;
                     break;
-                case Globals.DOUBLE:
-                    tmp.val = new Double((double)v);
+                default:
+                    d = v;
                     break;
             }
+            if(d==arithValues[j-1]){
+                return;
+            }
+            arithValues[j-1] = d;
+            tmp.val = box(arithTypes[j-1],d);
         }
     }
 
-    public double getArithInput(int j) {
-        InputElement tmp = (InputElement)(symbolicArithInputValue.get(j-1));
-        switch(tmp.type){
+    private static Object box(int type, double d) {
+        switch(type){
             case Globals.INT:
-                return ((Integer)tmp.val).doubleValue();
+                return Integer.valueOf((int)d);
             case Globals.SHORT:
-                return ((Short)tmp.val).doubleValue();
+                return Short.valueOf((short)d);
             case Globals.LONG:
-                return ((Long)tmp.val).doubleValue();
+                return Long.valueOf((long)d);
             case Globals.BYTE:
-                return ((Byte)tmp.val).doubleValue();
+                return Byte.valueOf((byte)d);
             case Globals.CHAR:
-                return ((Character)tmp.val).charValue();
+                return Character.valueOf((char)d);
             case Globals.BOOLEAN:
-                return ((Boolean)tmp.val).booleanValue()?1.0:0.0;
+                return Boolean.valueOf(d!=0);
             case Globals.FLOAT:
-                return ((Float)tmp.val).doubleValue();
+                return Float.valueOf((float)d);
             case Globals.DOUBLE:
-                return ((Double)tmp.val).doubleValue();
+                return Double.valueOf(d);
         }
-        System.exit(1);
-        return 0.0;
+        return null;
     }
 
-    public int symbolicArithInputType(int i) {
-        return ((InputElement)(symbolicArithInputValue.get(i-1))).type;
+    public double getArithInput(int j) {
+        return arithValues[j-1];
     }
 
+    public int symbolicArithInputType(int i) {
+        return arithTypes[i-1];
+    }
 
-    public Vector symbolicPointerInputValue;
 
     public int nSymbolicPointerInputValues(){
-        return symbolicPointerInputValue.size();
+        return nPointerInputs;
     }
 
     public int putAndGetPointerExpression(InputElement val) {
-        int x = nSymbolicPointerInputValues()+1;
-        symbolicPointerInputValue.add(val);
-        return x;
+        if(nPointerInputs==pointerInputs.length){
+            InputElement[] inputs = new InputElement[2*nPointerInputs];
+            System.arraycopy(pointerInputs,0,inputs,0,nPointerInputs);
+            pointerInputs = inputs;
+        }
+        pointerInputs[nPointerInputs] = val;
+        return ++nPointerInputs;
     }
 
     public InputElement getPointerElement(int i) {
-        return (InputElement)(symbolicPointerInputValue.get(i-1));
+        return pointerInputs[i-1];
     }
 
 
@@ -150,7 +239,7 @@ public class InputMap implements Printable {
                 getPointerElement(b_points_to).val = null;
             } else if (getPointerElement(s_points_to).val == null) {
                 if (ps.isEqual(s,0)) {
-                    for (i=1;i<ps.nodes.length;i++) {
+                    for (i=1;i<ps.size();i++) {
                         if (ps.isEqual(b,i)) {
                             b_points_to = i;
                             getPointerElement(b_points_to).val = null;
@@ -162,7 +251,7 @@ public class InputMap implements Printable {
                 }
             } else if (getPointerElement(b_points_to).val == null) {
                 if (ps.isEqual(b,0)) {
-                    for (i=1;i<ps.nodes.length;i++) {
+                    for (i=1;i<ps.size();i++) {
                         if (ps.isEqual(s,i)) {
                             s_points_to = i;
                             getPointerElement(s_points_to).val = null;
@@ -173,7 +262,7 @@ public class InputMap implements Printable {
                             = getPointerElement(s_points_to).val;
                 }
             } else {
-                for (i=1;i<ps.nodes.length;i++) {
+                for (i=1;i<ps.size();i++) {
                     if (ps.isEqual(b,i)) {
                         b_points_to = i;
                         getPointerElement(b_points_to).val
@@ -206,49 +295,146 @@ public class InputMap implements Printable {
 
 
     public void read() {
+        Arrays.fill(arithInputs,0,nArithInputs,null);
+        Arrays.fill(pointerInputs,0,nPointerInputs,null);
+        nArithInputs = nPointerInputs = 0;
+        inputHash = 0;
+        if(information.concreteOnly){
+            // fresh random inputs every run; the kept inputs are left for the concolic run
+            prevInput = currInput = input = null;
+            return;
+        }
+        if(information.seedFile!=null && !information.seedFile.equals("")){
+            readSeed(information.seedFile);
+            return;
+        }
         cute.concolic.ObjectInput in = new cute.concolic.ObjectInput("Inputs",true,information);
-        Vector tmp = new Vector();
-        symbolicArithInputValue = new Vector();
-        symbolicPointerInputValue = new Vector();
         if(in.ok()){
-            InputElement elt;
-            try {
-                int sz = in.in.readInt();
-                for(int i=0;i<sz;i++){
-                    elt = (InputElement)in.in.readObject();
-                    elt.id=tmp.size();
-                    tmp.add(elt);
+            readInputs(in.in);
+            in.close();
+        } else {
+            prevInput = currInput = input = null;
+        }
+    }
+
+    /**
+     * Reads the inputs from a seed file (-e) instead of the inputs generated
+     * by the previous execution. The seed file has the same format as the
+     * inputs file.
+     * @param fileName the seed file.
+     */
+    private void readSeed(String fileName) {
+        ObjectInputStream in;
+        try {
+            in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(fileName)));
+        } catch (IOException e) {
+            System.err.println("CUTE: seed file "+fileName+" could not be read");
+            prevInput = currInput = input = null;
+            return;
+        }
+        readInputs(in);
+        try {
+            in.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private void readInputs(ObjectInputStream in) {
+        InputElement[] tmp = null;
+        try {
+            int sz = in.readInt();
+            tmp = new InputElement[sz];
+            int[] next = new int[sz];
+            int[] ref = new int[sz];
+            for(int i=0;i<sz;i++){
+                InputElement elt = new InputElement();
+                elt.id = i;
+                elt.type = in.readByte();
+                next[i] = in.readInt();
+                ref[i] = NO_REF;
+                if(elt.type==Globals.REFERENCE){
+                    ref[i] = in.readInt();
+                    if(ref[i]==OTHER_REF){
+                        elt.val = in.readObject();
+                    } else if(ref[i]==UNINITIALIZED_REF){
+                        elt.val = Dumbo.val;
+                    }
+                } else if(elt.type==Globals.OBJECT){
+                    elt.val = in.readObject();
+                } else {
+                    elt.val = fromBits(elt.type,in.readLong());
                 }
-            } catch (IOException e) {
-                e.printStackTrace();
-                System.exit(1);
-            } catch(ClassNotFoundException e2){
-                e2.printStackTrace();
-                System.exit(1);
+                tmp[i] = elt;
             }
-            for (Iterator iterator = tmp.iterator(); iterator.hasNext();) {
-                InputElement inputElement = (InputElement) iterator.next();
-                if(inputElement.type==Globals.REFERENCE){
-                    if(inputElement.val!=null && inputElement.val instanceof ReferenceObject){
-                        inputElement.val = tmp.get(((ReferenceObject)inputElement.val).val);
-                    } else if(inputElement.val!=null && inputElement.val instanceof Dumbo){
-                        inputElement.val = Dumbo.val;
-                    }
+            for(int i=0;i<sz;i++){
+                if(next[i]>=0){
+                    tmp[i].next = tmp[next[i]];
                 }
-                if(inputElement.next!=null && inputElement.next instanceof ReferenceObject){
-                    inputElement.next = tmp.get(((ReferenceObject)inputElement.next).val);
+                if(ref[i]>=0){
+                    tmp[i].val = tmp[ref[i]];
                 }
             }
-            prevInput = null;
-            currInput = input = (InputElement)tmp.get(0);
-            if((information.debugLevel&4)!=0) logger.info(4,null,this);
-            in.close();
-        } else {
-            prevInput = currInput = input = null;
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        } catch(ClassNotFoundException e2){
+            e2.printStackTrace();
+            System.exit(1);
+        }
+        prevInput = null;
+        currInput = input = tmp.length==0?null:tmp[0];
+        if((information.debugLevel&4)!=0) logger.info(4,null,this);
+    }
+
+    /*
+     * Markers written instead of the index of the referenced input, for a
+     * reference input that is null, uninitialized, or to be initialized by
+     * an object that is written after the marker.
+     */
+    private static final int NO_REF = -1;
+    private static final int UNINITIALIZED_REF = -2;
+    private static final int OTHER_REF = -3;
+
+    private static long toBits(int type, Object val) {
+        switch(type){
+            case Globals.CHAR:
+                return ((Character)val).charValue();
+            case Globals.BOOLEAN:
+                return ((Boolean)val).booleanValue()?1:0;
+            case Globals.FLOAT:
+                return Float.floatToRawIntBits(((Float)val).floatValue());
+            case Globals.DOUBLE:
+                return Double.doubleToRawLongBits(((Double)val).doubleValue());
+            default:
+                return ((Number)val).longValue();
         }
     }
 
-    private void linearizeInput(IdentityHashMap seen, Vector v, InputElement elt){
+    private static Object fromBits(int type, long bits) {
+        switch(type){
+            case Globals.INT:
+                return Integer.valueOf((int)bits);
+            case Globals.SHORT:
+                return Short.valueOf((short)bits);
+            case Globals.LONG:
+                return Long.valueOf(bits);
+            case Globals.BYTE:
+                return Byte.valueOf((byte)bits);
+            case Globals.CHAR:
+                return Character.valueOf((char)bits);
+            case Globals.BOOLEAN:
+                return Boolean.valueOf(bits!=0);
+            case Globals.FLOAT:
+                return Float.valueOf(Float.intBitsToFloat((int)bits));
+            case Globals.DOUBLE:
+                return Double.valueOf(Double.longBitsToDouble(bits));
+        }
+        return null;
+    }
+
+    private static void linearizeInput(IdentityHashMap seen, Vector v, InputElement elt){
         InputElement tmp = elt;
         while(tmp!=null){
             v.add(tmp);
@@ -265,15 +451,8 @@ public class InputMap implements Printable {
         if(input==null) return;
         cute.concolic.ObjectOutput out = new cute.concolic.ObjectOutput("Inputs");
         if(out.ok()){
-            Vector arr = new Vector();
-            IdentityHashMap seen = new IdentityHashMap();
-            linearizeInput(seen,arr,input);
             try {
-                out.out.writeInt(arr.size());
-                for (Iterator iterator = arr.iterator(); iterator.hasNext();) {
-                    InputElement inputElement = (InputElement) iterator.next();
-                    out.out.writeObject(inputElement.makeSerializable());
-                }
+                writeInputs(out.out,input);
             } catch(IOException e2){
                 e2.printStackTrace();
                 System.exit(1);
@@ -282,6 +461,44 @@ public class InputMap implements Printable {
         }
     }
 
+    /**
+     * Writes the list of inputs starting at head in the format of the inputs
+     * file, e.g., to be given later as a seed file (-e). Each input is
+     * written as its type, the index of the next input, and either its value
+     * as raw bits or the index of the input it references.
+     * @param out the stream to write to.
+     * @param head the first input.
+     * @throws IOException
+     */
+    public static void writeInputs(ObjectOutputStream out, InputElement head) throws IOException {
+        Vector arr = new Vector();
+        IdentityHashMap seen = new IdentityHashMap();
+        linearizeInput(seen,arr,head);
+        out.writeInt(arr.size());
+        for (Iterator iterator = arr.iterator(); iterator.hasNext();) {
+            InputElement inputElement = (InputElement) iterator.next();
+            out.writeByte(inputElement.type);
+            out.writeInt(inputElement.next==null?NO_REF:((InputElement)inputElement.next).id);
+            if(inputElement.type==Globals.REFERENCE){
+                Object val = inputElement.val;
+                if(val==null){
+                    out.writeInt(NO_REF);
+                } else if(val instanceof InputElement){
+                    out.writeInt(((InputElement)val).id);
+                } else if(val instanceof Dumbo){
+                    out.writeInt(UNINITIALIZED_REF);
+                } else {
+                    out.writeInt(OTHER_REF);
+                    out.writeObject(val);
+                }
+            } else if(inputElement.type==Globals.OBJECT){
+                out.writeObject(inputElement.val);
+            } else {
+                out.writeLong(toBits(inputElement.type,inputElement.val));
+            }
+        }
+    }
+
     public void print(PrintWriter out){
         Vector arr = new Vector();
         IdentityHashMap seen = new IdentityHashMap();
@@ -369,17 +586,61 @@ public class InputMap implements Printable {
         initialized.put(inputElement,ret);
     }
 
+    /**
+     * The reference fields of an object input that were not initialized yet,
+     * with -z. Each field has its input element reserved in field order, so
+     * the inputs of the object keep their positions whatever the order in
+     * which the program reads the fields.
+     */
+    private static class LazyObject {
+        InputFactory f;
+        String varName;
+        int tab;
+        boolean recursive;
+        InputElement[] slots;
+    }
+
+    private IdentityHashMap lazyFields = new IdentityHashMap();
+
+    /**
+     * Initializes the field fieldId of o declared in the class c, if it is a
+     * reference field of an object input that was not initialized yet and
+     * read is true. If read is false, the program overwrites the field, which
+     * is then never initialized.
+     */
+    public void lazyInput(Object o,String c,int fieldId,boolean read){
+        if(lazyFields.isEmpty() || o==null) return;
+        LazyObject lo = (LazyObject)lazyFields.get(o);
+        if(lo==null) return;
+        int[] ids = lo.f.getIds(st);
+        for (int i = 0; i < ids.length; i++) {
+            if(ids[i]==fieldId && lo.slots[i]!=null
+                    && lo.f.fields[i].getDeclaringClass().getName().equals(c)){
+                InputElement slot = lo.slots[i];
+                lo.slots[i] = null;
+                if(read){
+                    InputElement prev = prevInput, curr = currInput;
+                    prevInput = null;
+                    currInput = slot;
+                    initializeInputObjectField(lo.f,i,o,lo.tab,lo.varName,lo.recursive);
+                    prevInput = prev;
+                    currInput = curr;
+                }
+            }
+        }
+    }
+
     public Object ObjectAux(String className,boolean recursive){
-        Class c = null;
+        InputFactory f = null;
         junitTest.assignToInput(className);
         if((information.debugLevel&1)!=0) logger.info(1,"Input Class Begin",null);
         try {
-            c = Class.forName(className);
+            f = InputFactory.get(className);
         } catch (ClassNotFoundException e) {
             e.printStackTrace();
             System.exit(1);
         }
-        Object tmp = input(c,0,recursive);
+        Object tmp = input(f,0,recursive);
         chooseNullAndNonullValues(tmp);
         if((information.debugLevel&1)!=0) logger.info(1,"Input Class End",null);
         return tmp;
@@ -400,6 +661,7 @@ public class InputMap implements Printable {
     }
 
     private void pushExpression(Expression e){
+        if(information.concreteOnly) return;
         state.setState(SOMELOCALVAR,e);
         Call.popAll(NOLINENUMBER);
         Call.setReturn(0,SOMELOCALVAR,NOLINENUMBER);
@@ -408,104 +670,133 @@ public class InputMap implements Printable {
     private Object initializeInputObjectToRet(String className,InputElement val,Object ret){
 
         if(information.printTraceAndInputs){
-            ptrace.printInputLn(System.identityHashCode(ret)+"("+className+")");
+            ptrace.printInputLn(ObjectIds.id(ret)+"("+className+")");
         }
         if(ret == null)
             junitTest.valueObjectNull();
         else
-            junitTest.valueObject(System.identityHashCode(ret),className);
+            junitTest.valueObject(ObjectIds.id(ret),className);
         pushExpression(new PointerExpression(putAndGetPointerExpression(val)));
         return ret;
     }
 
-    private void initializeInputObjectFields(Class c,Object ret,int tab,String varName,boolean recursive){
-        Field[] field = c.getFields();
-        for (int i = 0; i < field.length; i++) {
-            Field field1 = field[i];
-            try {
-                int mod = field1.getModifiers();
-                if(!Modifier.isPrivate(mod) && !Modifier.isProtected(mod)
-                        && !Modifier.isStatic(mod) && !Modifier.isFinal(mod)){
-                    String type = field1.getType().toString();
-                    if(information.printTraceAndInputs){
-                        for(int l=0;l<tab+1;l++)
-                            ptrace.printInput("  ");
-                        ptrace.printInput(field1.getName());
-                        ptrace.printInput("=");
-                    }
-                    if(!type.startsWith("class")){
-                        junitTest.assignTo(varName,field1.getName(),type);
-                    }
-                    Call.funBegin(null,NOLINENUMBER);
-                    if(type.equals("int")){
-                        field1.setInt(ret,((Integer)myInputWithoutAssignTo(Globals.INT, null)).intValue());
-                    } else if(type.equals("short")){
-                        field1.setShort(ret,((Short)myInputWithoutAssignTo(Globals.SHORT, null)).shortValue());
-                    } else if(type.equals("byte")) {
-                        field1.setByte(ret,((Byte)myInputWithoutAssignTo(Globals.BYTE, null)).byteValue());
-                    } else if(type.equals("char")) {
-                        field1.setChar(ret,((Character)myInputWithoutAssignTo(Globals.CHAR, null)).charValue());
-                    } else if(type.equals("long")){
-                        field1.setLong(ret,((Long)myInputWithoutAssignTo(Globals.LONG, null)).longValue());
-                    } else if(type.equals("boolean")){
-                        field1.setBoolean(ret,((Boolean)myInputWithoutAssignTo(Globals.BOOLEAN, null)).booleanValue());
-                    } else if(type.equals("float")){
-                        field1.setFloat(ret,((Float)myInputWithoutAssignTo(Globals.FLOAT, null)).floatValue());
-                    } else if(type.equals("double")){
-                        field1.setDouble(ret,((Double)myInputWithoutAssignTo(Globals.DOUBLE, null)).doubleValue());
-                    } else if(type.startsWith("class")){
-                        junitTest.assignTo(varName,field1.getName(),type.substring(6));
-                        field1.set(ret,input(field1.getType(),tab+1,recursive));
-                    }
-                    Call.funEnd(NOLINENUMBER);
-                    Call.storeReturn(ret,st.get(field1.getName()),NOLINENUMBER);
+    private void initializeInputObjectFields(InputFactory f,Object ret,int tab,String varName,boolean recursive){
+        LazyObject lo = null;
+        for (int i = 0; i < f.fields.length; i++) {
+            if(information.lazyInit && f.types[i]==Globals.REFERENCE){
+                if(lo==null){
+                    lo = new LazyObject();
+                    lo.f = f;
+                    lo.varName = varName;
+                    lo.tab = tab;
+                    lo.recursive = recursive;
+                    lo.slots = new InputElement[f.fields.length];
+                    lazyFields.put(ret,lo);
                 }
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
-                System.exit(1);
+                lo.slots[i] = isInputAvailable(Globals.REFERENCE) ? getInput() : setInput(null,Globals.REFERENCE);
+            } else {
+                initializeInputObjectField(f,i,ret,tab,varName,recursive);
             }
         }
+    }
 
+    private void initializeInputObjectField(InputFactory f,int i,Object ret,int tab,String varName,boolean recursive){
+        Field field1 = f.fields[i];
+        try {
+            if(information.printTraceAndInputs){
+                for(int l=0;l<tab+1;l++)
+                    ptrace.printInput("  ");
+                ptrace.printInput(field1.getName());
+                ptrace.printInput("=");
+            }
+            if(f.types[i]!=Globals.REFERENCE){
+                junitTest.assignTo(varName,field1.getName(),f.typeNames[i]);
+            }
+            Call.funBegin(null,NOLINENUMBER);
+            switch(f.types[i]){
+                case Globals.INT:
+                    field1.setInt(ret,((Integer)myInputWithoutAssignTo(Globals.INT, null)).intValue());
+                    break;
+                case Globals.SHORT:
+                    field1.setShort(ret,((Short)myInputWithoutAssignTo(Globals.SHORT, null)).shortValue());
+                    break;
+                case Globals.BYTE:
+                    field1.setByte(ret,((Byte)myInputWithoutAssignTo(Globals.BYTE, null)).byteValue());
+                    break;
+                case Globals.CHAR:
+                    field1.setChar(ret,((Character)myInputWithoutAssignTo(Globals.CHAR, null)).charValue());
+                    break;
+                case Globals.LONG:
+                    field1.setLong(ret,((Long)myInputWithoutAssignTo(Globals.LONG, null)).longValue());
+                    break;
+                case Globals.BOOLEAN:
+                    field1.setBoolean(ret,((Boolean)myInputWithoutAssignTo(Globals.BOOLEAN, null)).booleanValue());
+                    break;
+                case Globals.FLOAT:
+                    field1.setFloat(ret,((Float)myInputWithoutAssignTo(Globals.FLOAT, null)).floatValue());
+                    break;
+                case Globals.DOUBLE:
+                    field1.setDouble(ret,((Double)myInputWithoutAssignTo(Globals.DOUBLE, null)).doubleValue());
+                    break;
+                case Globals.REFERENCE:
+                    junitTest.assignTo(varName,field1.getName(),f.typeNames[i]);
+                    field1.set(ret,input(InputFactory.get(field1.getType()),tab+1,recursive));
+                    break;
+            }
+            Call.funEnd(NOLINENUMBER);
+            Call.storeReturn(ret,f.getIds(st)[i],NOLINENUMBER);
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
     }
 
-    private void exitIfNonInstantiable(Class c){
-        int cmod = c.getModifiers();
-        if(Modifier.isAbstract(cmod) || Modifier.isInterface(cmod)){
+    private void exitIfNonInstantiable(InputFactory f){
+        if(!f.instantiable){
             System.err.println("CUTE: Input type is not instantiable");
             System.exit(1);
         }
     }
 
-    private Object newInstance(Class c){
-        Object ret = CustomInitializer.getNewInstance(c,information.random,rand);
+    private Object newInstance(InputFactory f){
+        Object ret = f.custom ? CustomInitializer.getNewInstance(f.c,information.random,rand) : null;
         if(ret==null){
             try {
-                return c.newInstance();
+                return f.newInstance();
             } catch (InstantiationException e) {
                 e.printStackTrace();
                 System.exit(1);
             } catch (IllegalAccessException e) {
                 e.printStackTrace();
                 System.exit(1);
+            } catch (InvocationTargetException e) {
+                e.printStackTrace();
+                System.exit(1);
             }
         }
         return ret;
     }
 
-    private  Object input(Class c,int tab,boolean recursive){
+    private  Object input(InputFactory f,int tab,boolean recursive){
+        Class c = f.c;
         Object ret=null;
         InputElement val;
         String varName=null;
 
-        exitIfNonInstantiable(c);
+        exitIfNonInstantiable(f);
         if(!isInputAvailable(Globals.REFERENCE)){
             val = setInput(ret,Globals.REFERENCE);
+            hashInput(0);
             return  initializeInputObjectToRet(c.getName(),val,ret);
         }
         val = getInput();
         if(val.val==null){
+            hashInput(0);
             return  initializeInputObjectToRet(c.getName(),val,ret);
         }
+        // an object is hashed by the input element it is built from
+        hashInput(val.val instanceof InputElement ? 2+((InputElement)val.val).id
+                : val.val == Dumbo.val ? 1 : typeTag(val.val));
 
         if(val.val != Dumbo.val && isAlreadyInitialized((InputElement)val.val)){
             ret = getInitialized((InputElement)val.val);
@@ -515,7 +806,7 @@ public class InputMap implements Printable {
 
         Object o = null;
         if (val.val == Dumbo.val) {
-            ret = newInstance(c);
+            ret = newInstance(f);
             o = AnyObject.val;
             myInput(Globals.OBJECT, o);
         } else if (!(val.val instanceof InputElement)) {
@@ -523,7 +814,7 @@ public class InputMap implements Printable {
             o = ret;
             myInput(Globals.OBJECT, o);
         } else if (((InputElement) val.val).val instanceof AnyObject) {
-            ret = newInstance(c);
+            ret = newInstance(f);
             o = AnyObject.val;
             myInput(Globals.OBJECT, o);
         } else {
@@ -535,21 +826,21 @@ public class InputMap implements Printable {
         setInitialized((InputElement) val.val, ret);
         if (information.printTraceAndInputs) {
             if (o instanceof AnyObject)
-                ptrace.printInputLn(System.identityHashCode(ret) + "(" + c.getName() + ")");
+                ptrace.printInputLn(ObjectIds.id(ret) + "(" + c.getName() + ")");
             else
                 ptrace.printInputLn(ret + "(" + c.getName() + ")");
         }
         if (o instanceof AnyObject)
-            varName = junitTest.valueObject(System.identityHashCode(ret), c.getName());
+            varName = junitTest.valueObject(ObjectIds.id(ret), c.getName());
         else
-            varName = junitTest.valueObject(System.identityHashCode(ret), c.getName(), ret);
+            varName = junitTest.valueObject(ObjectIds.id(ret), c.getName(), ret);
 
         if(recursive)
-            initializeInputObjectFields(c,ret,tab,varName,recursive);
+            initializeInputObjectFields(f,ret,tab,varName,recursive);
 
         popCurrInput(val);
         Expression e = new PointerExpression(putAndGetPointerExpression(val));
-        state.setStateConcrete(new Long(System.identityHashCode(ret)),e);
+        state.setStateConcrete(new Long(ObjectIds.id(ret)),e);
         pushExpression(e);
         return ret;
     }
@@ -601,6 +892,7 @@ public class InputMap implements Printable {
             }
             val = setInput(ret,type);
         }
+        hashInput(31*type+(type==Globals.OBJECT ? typeTag(ret) : toBits(type,ret)));
         if((information.debugLevel&1)!=0) logger.info(1,"myInput End",null);
         if(information.printTraceAndInputs && (type != Globals.OBJECT )){
             ptrace.printInputLn(ret+"("+ret.getClass().getName().substring(10).toLowerCase()+")");
@@ -615,21 +907,21 @@ public class InputMap implements Printable {
     private  Object nextDefault(int type,Object o) {
         switch(type){
             case Globals.INT:
-                return new Integer(0);
+                return Integer.valueOf(0);
             case Globals.SHORT:
-                return new Short((short) 0);
+                return Short.valueOf((short) 0);
             case Globals.LONG:
-                return new Long(0);
+                return Long.valueOf(0);
             case Globals.BYTE:
-                return new Byte((byte) 0);
+                return Byte.valueOf((byte) 0);
             case Globals.CHAR:
-                return new Character((char) 0);
+                return Character.valueOf((char) 0);
             case Globals.FLOAT:
-                return new Float(0.0);
+                return Float.valueOf(0.0f);
             case Globals.DOUBLE:
-                return new Double(0.0);
+                return Double.valueOf(0.0);
             case Globals.BOOLEAN:
-                return new Boolean(false);
+                return Boolean.FALSE;
             case Globals.OBJECT:
                 return o;
         }
@@ -641,21 +933,21 @@ public class InputMap implements Printable {
     private  Object nextRandom(int type,Object o) {
         switch(type){
             case Globals.INT:
-                return new Integer(rand.nextInt());
+                return Integer.valueOf(rand.nextInt());
             case Globals.SHORT:
-                return new Short((short)rand.nextInt());
+                return Short.valueOf((short)rand.nextInt());
             case Globals.LONG:
-                return new Long(rand.nextLong());
+                return Long.valueOf(rand.nextLong());
             case Globals.BYTE:
-                return new Byte((byte)rand.nextInt());
+                return Byte.valueOf((byte)rand.nextInt());
             case Globals.CHAR:
-                return new Character((char)rand.nextInt());
+                return Character.valueOf((char)rand.nextInt());
             case Globals.FLOAT:
-                return new Float(rand.nextFloat());
+                return Float.valueOf(rand.nextFloat());
             case Globals.DOUBLE:
-                return new Double(rand.nextDouble());
+                return Double.valueOf(rand.nextDouble());
             case Globals.BOOLEAN:
-                return new Boolean(rand.nextBoolean());
+                return Boolean.valueOf(rand.nextBoolean());
             case Globals.OBJECT:
                 return o;
         }
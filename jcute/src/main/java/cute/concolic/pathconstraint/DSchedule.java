@@ -2,6 +2,8 @@ package cute.concolic.pathconstraint;
 
 import java.io.PrintWriter;
 import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedList;
 
 /**
  *  .
@@ -20,12 +22,70 @@ public class DSchedule implements Serializable, Constraint {
     public int nextPid;
     public int nextMid;
     public boolean isRace;
+    /** with optimal distributed search, the message queue delivered, by id */
+    public int queue = -1;
+    // the queues pending at this point, those that must be tried here, and those tried
+    private LinkedList enabled;
+    private LinkedList backtrack = new LinkedList();
+    private LinkedList done = new LinkedList();
+
+    public void setQueue(int queue) {
+        this.queue = queue;
+        Integer id = new Integer(queue);
+        if (!done.contains(id)) {
+            done.add(id);
+        }
+    }
+
+    public void setEnabledQueues(LinkedList enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Adds queue to the queues to be tried at this point, as the queue of a
+     * message whose receive races with the receive made here. If the
+     * message was not pending here, all the pending queues are added
+     * instead.
+     */
+    public void addBacktrack(int queue, boolean pending) {
+        if (pending || enabled == null) {
+            Integer id = new Integer(queue);
+            if (!backtrack.contains(id)) {
+                backtrack.add(id);
+            }
+        } else {
+            for (Iterator iterator = enabled.iterator(); iterator.hasNext();) {
+                Object id = iterator.next();
+                if (!backtrack.contains(id)) {
+                    backtrack.add(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Selects the next queue of backtrack that was not tried here.
+     *
+     * @return false, if all of them were tried.
+     */
+    public boolean nextBacktrack() {
+        for (Iterator iterator = backtrack.iterator(); iterator.hasNext();) {
+            Integer id = (Integer) iterator.next();
+            if (!done.contains(id)) {
+                setQueue(id.intValue());
+                return true;
+            }
+        }
+        return false;
+    }
 
     public void printConstraint(PrintWriter out) {
         out.print("pid = " + pid);
         out.print("\tmid = " + mid);
         out.print("\tnextPid = " + nextPid);
         out.print("\tnextMid = " + nextMid);
-        out.println("\tisRace = " + isRace);
+        out.print("\tisRace = " + isRace);
+        out.print("\tqueue = " + queue);
+        out.println("\tbacktrack = " + backtrack);
     }
 }
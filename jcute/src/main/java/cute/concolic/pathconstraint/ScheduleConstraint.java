@@ -2,6 +2,7 @@ package cute.concolic.pathconstraint;
 
 import java.io.Serializable;
 import java.io.PrintWriter;
+import java.util.Iterator;
 import java.util.LinkedList;
 
 /**
@@ -16,9 +17,13 @@ public class ScheduleConstraint implements Serializable, Constraint{
     private Integer currentThreadId;
     private int enabledThreadCount;
     private boolean isRace;
+    // the threads enabled at this point, and those that must be tried here
+    private LinkedList enabled;
+    private LinkedList backtrack;
 
     public ScheduleConstraint() {
         postponed = new LinkedList();
+        backtrack = new LinkedList();
         isRace = false;
     }
 
@@ -34,8 +39,51 @@ public class ScheduleConstraint implements Serializable, Constraint{
         enabledThreadCount = i;
     }
 
+    public void setEnabledThreads(LinkedList enabled){
+        this.enabled = enabled;
+        enabledThreadCount = enabled.size();
+    }
+
+    /**
+     * Adds thread to the threads to be tried at this point, as a thread
+     * whose access races with the access made here. If thread was not
+     * enabled here, all the enabled threads are added instead.
+     */
+    public void addBacktrack(Integer thread){
+        if(enabled==null || enabled.contains(thread)){
+            if(!backtrack.contains(thread)){
+                backtrack.add(thread);
+            }
+        } else {
+            for (Iterator iterator = enabled.iterator(); iterator.hasNext();) {
+                Object t = iterator.next();
+                if(!backtrack.contains(t)){
+                    backtrack.add(t);
+                }
+            }
+        }
+    }
+
+    public LinkedList getBacktrack(){
+        return backtrack;
+    }
+
+    /**
+     * @return true, if a thread that races with this point is yet to be
+     * tried here. The threads tried are the postponed ones and the current
+     * one.
+     */
     public boolean isBackTrackingRequired(){
-        return isRace && (postponed.size()<enabledThreadCount-1);
+        if(!isRace || postponed.size()>=enabledThreadCount-1){
+            return false;
+        }
+        for (Iterator iterator = backtrack.iterator(); iterator.hasNext();) {
+            Object t = iterator.next();
+            if(!t.equals(currentThreadId) && !postponed.contains(t)){
+                return true;
+            }
+        }
+        return false;
     }
 
     public boolean isBackTrackingPoint(){
@@ -50,7 +98,8 @@ public class ScheduleConstraint implements Serializable, Constraint{
     public void printConstraint(PrintWriter out) {
         out.print("postponed = " + postponed);
         out.print("\tthread = " + currentThreadId);
-        out.println("\tisRace = " + isRace);
+        out.print("\tisRace = " + isRace);
+        out.println("\tbacktrack = " + backtrack);
     }
 
     public void setRace(boolean race) {
@@ -48,6 +48,11 @@ public class BranchHistory implements Printable {
     public void read(){
         isOk = true;
         initSize = 0;
+        if(information.seedFile!=null && !information.seedFile.equals("")){
+            // the history of the previous execution does not match the seed
+            history = new Vector(20);
+            return;
+        }
         ObjectInput in = new ObjectInput("Branches",true,information);
         if(in.ok()){
             try{
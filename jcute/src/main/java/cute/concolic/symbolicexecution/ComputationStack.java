@@ -1,6 +1,7 @@
 package cute.concolic.symbolicexecution;
 
 import cute.concolic.CuteException;
+import cute.concolic.ObjectIds;
 import cute.concolic.input.InputMap;
 import cute.concolic.logging.BranchCoverageLog;
 import cute.concolic.pathconstraint.PathConstraint;
@@ -49,7 +50,7 @@ public class ComputationStack {
     }
 
     public void push(long adr){
-        Expression e = state.getState(adr);
+        Expression e = state.isConcrete()?null:state.getState(adr);
         stack.push(e);
         stackSymbolic.push(new Long(adr));
         //((Expression)stack.peek()).printExpression();
@@ -79,7 +80,7 @@ public class ComputationStack {
             boolean isSymbolic = false;
             for(int i=0;i<sz;i++){
                 Expression e = state.getState(((Long)stackSymbolic.elementAt(i)).longValue(),
-                        System.identityHashCode(stackValue.elementAt(i)));
+                        ObjectIds.find(stackValue.elementAt(i)));
                 if(e!=null) {
                     isSymbolic = true;
                 }
@@ -143,19 +144,28 @@ public class ComputationStack {
     }
 
     public void pop(long addr){
-        if(stack.isEmpty()){
-            state.setState(addr,null);
-        } else {
-            state.setState(addr,(Expression)stack.pop());
+        Expression e = stack.isEmpty()?null:(Expression)stack.pop();
+        if(e==null && state.isConcrete()){
+            return;
         }
+        state.setState(addr,e);
         //state.print();
     }
 
     public void storeReturn(long addr){
+        if(returnExpression==null && state.isConcrete()){
+            return;
+        }
         state.setState(addr,returnExpression);
     }
 
     public void store(long addr){
+        if(state.isConcrete()){
+            // no operand can be symbolic and there is nothing to overwrite
+            ibiops = -1;
+            op = null;
+            return;
+        }
         if(ibiops==-1){
             state.setState(addr,null);
         } else if(ibiops==0){
@@ -240,7 +250,8 @@ public class ComputationStack {
         boolean isOtherBranchTaken = false;
         if(fname!=null)
             isOtherBranchTaken = coverage.branchTaken(fname,bid,bCount,pos);
-        if(ibiops==1 && (op.equals("==") || op.equals("!="))){
+        boolean symbolic = ibiops==1 && !state.isConcrete();
+        if(symbolic && (op.equals("==") || op.equals("!="))){
             Expression first = (Expression)state.getState(biops[0].address);
             Expression second = (Expression)state.getState(biops[1].address);
             if(first!=null && second==null && first instanceof PointerExpression && biops[1].valueLong==0){
@@ -259,7 +270,7 @@ public class ComputationStack {
                 added = true;
             }
         }
-        if(ibiops==1){
+        if(symbolic){
             Expression first = (Expression)state.getState(biops[0].address);
             Expression second = (Expression)state.getState(biops[1].address);
             ArithmeticExpression ret = null;
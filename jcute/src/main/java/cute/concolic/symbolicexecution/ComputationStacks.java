@@ -58,6 +58,30 @@ public class ComputationStacks {
         getStack().loadValueLong(val);
     }
 
+    /**
+     * Same as loadAddress(a), loadValue(va), store(dst).
+     */
+    public void assign(long dst,long a,double va){
+        ComputationStack cs = getStack();
+        cs.loadAddress(a);
+        cs.loadValue(va);
+        cs.store(dst);
+    }
+
+    /**
+     * Same as loadAddress(a), loadValue(va), loadAddress(b), loadValue(vb),
+     * applyOp(op), store(dst).
+     */
+    public void assignBinary(long dst,String op,long a,double va,long b,double vb){
+        ComputationStack cs = getStack();
+        cs.loadAddress(a);
+        cs.loadValue(va);
+        cs.loadAddress(b);
+        cs.loadValue(vb);
+        cs.applyOp(op);
+        cs.store(dst);
+    }
+
     public void pushValue(Object o) {
         getStack().pushValue(o);
     }
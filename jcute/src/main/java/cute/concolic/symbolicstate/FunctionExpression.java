@@ -1,6 +1,7 @@
 package cute.concolic.symbolicstate;
 
 import cute.concolic.Globals;
+import cute.concolic.ObjectIds;
 import cute.concolic.input.InputElement;
 import cute.concolic.input.InputMap;
 import cute.concolic.symbolicexecution.ComputationStack;
@@ -38,7 +39,7 @@ public abstract class FunctionExpression extends Expression {
 
         e = PrimitiveObjectExpression.getExpression(fname,syms,vals);
         if(e!=null) {
-            Globals.globals.state.setStateConcrete(new Long(System.identityHashCode(vals.elementAt(0))),e);
+            Globals.globals.state.setStateConcrete(new Long(ObjectIds.id(vals.elementAt(0))),e);
             return;
         }
 
@@ -20,6 +20,8 @@ public class State implements Printable {
     private Logger logger;
     private Information information;
     private HashMap concreteToSymbolic;
+    // number of symbolic slots live in gs and in all the local stacks
+    private int symbolicSlots;
 
     public State(Logger logger, Information information) {
         this.logger = logger;
@@ -43,13 +45,15 @@ public class State implements Printable {
                 ls = (HashMap)localStack.peek();
             }
             if(e==null){
-                ls.remove(new Long(address));
-                gs.remove(new Long(address));
+                if(symbolicSlots==0) return;
+                Long key = new Long(address);
+                if(ls.remove(key)!=null) symbolicSlots--;
+                if(gs.remove(key)!=null) symbolicSlots--;
             } else {
                 if(address>>32 == 0){
-                    ls.put(new Long(address),e);
+                    if(ls.put(new Long(address),e)==null) symbolicSlots++;
                 } else {
-                    gs.put(new Long(address),e);
+                    if(gs.put(new Long(address),e)==null) symbolicSlots++;
                 }
             }
             if((information.debugLevel&16)!=0) logger.info(16,null,this);
@@ -61,7 +65,7 @@ public class State implements Printable {
         synchronized(localStacks){
             Stack localStack = (Stack)localStacks.get(t);
             if(localStack!=null){
-                localStack.pop();
+                symbolicSlots -= ((HashMap)localStack.pop()).size();
                 if(localStack.isEmpty())
                     localStacks.remove(t);
             }
@@ -106,6 +110,24 @@ public class State implements Printable {
         }
     }
 
+    /**
+     * Checks whether no symbolic value can be reached from the current
+     * thread, i.e., there is no global symbolic slot and no local symbolic
+     * slot in its current frame. Objects that map to symbolic values are not
+     * considered.
+     * @return true, if everything the current thread reads is concrete.
+     */
+    public boolean isConcrete() {
+        if(symbolicSlots==0) return true;
+        if(!gs.isEmpty()) return false;
+        Stack localStack;
+        synchronized(localStacks){
+            localStack = (Stack)localStacks.get(Thread.currentThread());
+        }
+        return localStack == null || localStack.isEmpty()
+                || ((HashMap)localStack.peek()).isEmpty();
+    }
+
     public Expression getState(long address,long oid) {
         Expression e = getState(address);
         if(e!=null) return e;
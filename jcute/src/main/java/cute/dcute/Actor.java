@@ -1,7 +1,5 @@
 package cute.dcute;
 
-import cute.concolic.Globals;
-
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 
@@ -27,10 +25,8 @@ abstract public class Actor {
 
     public void send(Actor a,int qid,Message m){
         addOneToVc();
-        if(Globals.globals.information.optimalDistributed)
-            DScheduler.sched.checkAndSetRace(this,a,qid);
         m.vc = new IdentityHashMap(vc);
-        DScheduler.sched.sendMessage(a,qid,m);
+        DScheduler.sched.sendMessage(this,a,qid,m);
     }
 
     abstract public void receive(Message m);
@@ -1,7 +1,8 @@
 package cute.dcute;
 
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 
 /**
  *  .
@@ -12,32 +13,32 @@ import java.util.LinkedList;
  */
 public class ActorQueues {
     private Actor actor;
-    private LinkedList q;
+    /** the message queues in the order of their first message; mid indexes it */
+    private ArrayList q;
+    /** the message queues of q, by sender and then by qid */
+    private IdentityHashMap index;
 
     public ActorQueues(Actor actor) {
         this.actor = actor;
-        q = new LinkedList();
+        q = new ArrayList();
+        index = new IdentityHashMap();
     }
 
-    public void addMessage(Actor from,int qid,Message m) {
-        boolean found = false;
-        MessageQueue  messageQueue = null;
-        for (Iterator iterator = q.iterator(); !found && iterator.hasNext();) {
-            messageQueue = (MessageQueue) iterator.next();
-            if(messageQueue.equals(from,qid)){
-                found = true;
-            }
+    public MessageQueue addMessage(Actor from,int qid,Message m) {
+        HashMap byQid = (HashMap)index.get(from);
+        if(byQid==null){
+            byQid = new HashMap();
+            index.put(from,byQid);
         }
-        if(!found){
-            messageQueue = new MessageQueue(from,qid);
-            q.addLast(messageQueue);
+        Integer key = new Integer(qid);
+        MessageQueue messageQueue = (MessageQueue)byQid.get(key);
+        if(messageQueue==null){
+            messageQueue = new MessageQueue(actor,from,qid);
+            q.add(messageQueue);
+            byQid.put(key,messageQueue);
         }
         messageQueue.addMessage(m);
-/*
-        if(q.size()>1){
-            System.out.println("Actor has more than one queue");
-        }
-*/
+        return messageQueue;
     }
 
     public Actor getActor() {
@@ -50,10 +51,19 @@ public class ActorQueues {
         ret = (Message)mq.getAndRemove();
         if(mq.isEmpty()){
             q.remove(mid);
+            HashMap byQid = (HashMap)index.get(mq.getSender());
+            byQid.remove(new Integer(mq.getQid()));
+            if(byQid.isEmpty()){
+                index.remove(mq.getSender());
+            }
         }
         return ret;
     }
 
+    public Message getAndRemove(MessageQueue mq) {
+        return getAndRemove(q.indexOf(mq));
+    }
+
     public boolean isEmpty() {
         return q.isEmpty();
     }
@@ -62,7 +72,7 @@ public class ActorQueues {
         return q.size();
     }
 
-    public LinkedList getQ() {
+    public ArrayList getQ() {
         return q;
     }
 }
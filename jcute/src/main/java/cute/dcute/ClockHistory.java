@@ -2,42 +2,42 @@ package cute.dcute;
 
 import cute.concolic.pathconstraint.DSchedule;
 
-import java.util.IdentityHashMap;
-import java.util.LinkedList;
-
 /**
  *  .
  * User: ksen
  * Date: Oct 11, 2005
  * Time: 3:59:42 PM
  * To change this template use File | Settings | File Templates.
+ *
+ * A receive of an actor: the clock of the actor for it, the queue of the
+ * message received, and the number of messages sent before it.
  */
 public class ClockHistory extends Object {
-    private Actor actor;
-    private IdentityHashMap vc;
-    private LinkedList queues;
+    private int clock;
+    private MessageQueue queue;
+    private int sent;
     private DSchedule ds;
 
-    public Actor getActor() {
-        return actor;
+    public int getClock() {
+        return clock;
     }
 
-    public IdentityHashMap getVc() {
-        return vc;
+    public MessageQueue getQueue() {
+        return queue;
     }
 
-    public LinkedList getQueues() {
-        return queues;
+    public int getSent() {
+        return sent;
     }
 
     public DSchedule getDs() {
         return ds;
     }
 
-    public ClockHistory(ActorQueues aq, DSchedule ds) {
-        actor = aq.getActor();
-        vc = new IdentityHashMap(actor.vc);
-        queues = new LinkedList(aq.getQ());
+    public ClockHistory(int clock, MessageQueue queue, int sent, DSchedule ds) {
+        this.clock = clock;
+        this.queue = queue;
+        this.sent = sent;
         this.ds = ds;
     }
 }
@@ -15,32 +15,66 @@ import java.util.*;
 public class DScheduler {
     public static DScheduler sched = new DScheduler();
 
-    private LinkedList q;
-    private Vector chist;
+    /** the actors with pending messages, in the order of their first message; pid indexes it */
+    private ArrayList q;
+    /** the queues of q, by actor */
+    private IdentityHashMap queues;
+    /** the message queues with pending messages, by id */
+    private HashMap byId;
+    /** the list of ClockHistory of the receives so far, by actor */
+    private IdentityHashMap chist;
+    private int nextQueueId;
+    private int sent;
 
     public DScheduler() {
-        q = new LinkedList();
-        chist = new Vector(20);
+        q = new ArrayList();
+        queues = new IdentityHashMap();
+        byId = new HashMap();
+        chist = new IdentityHashMap();
+        nextQueueId = 0;
+        sent = 0;
     }
 
     public void sendMessage(Actor a,int qid,Message m){
-        boolean found = false;
-        ListIterator iter = q.listIterator();
-        ActorQueues aq = null;
-        while(!found && iter.hasNext()){
-            aq = (ActorQueues)iter.next();
-            if(aq.getActor()==a){
-                found = true;
-            }
-        }
-        if(!found){
+        sendMessage(a,a,qid,m);
+    }
+
+    public void sendMessage(Actor from,Actor a,int qid,Message m){
+        ActorQueues aq = (ActorQueues)queues.get(a);
+        if(aq==null){
             aq = new ActorQueues(a);
-            q.addLast(aq);
+            q.add(aq);
+            queues.put(a,aq);
         }
-        aq.addMessage(a,qid,m);
+        m.seq = sent++;
+        MessageQueue mq = aq.addMessage(from,qid,m);
+        if(mq.getId()<0){
+            mq.setId(nextQueueId++);
+            byId.put(new Integer(mq.getId()),mq);
+        }
+    }
+
+    /**
+     * @return true, if a single message is pending, so that there is no
+     * other message to try in its place.
+     */
+    private boolean isForced(){
+        return q.size()==1 && ((ActorQueues)q.get(0)).size()==1;
     }
 
     public void scheduleNext(){
+        boolean optimal = Globals.globals.information.optimalDistributed;
+        if(Globals.globals.information.batchDelivery){
+            // a message with no alternative is never backtracked, nor can it
+            // race with a later send, as all later sends depend on it
+            while(isForced()){
+                ActorQueues aq = (ActorQueues)q.get(0);
+                deliver(aq,(MessageQueue)aq.getQ().get(0),null);
+            }
+            if(q.isEmpty()){
+                return;
+            }
+        }
         int k = Globals.globals.path.size();
         int l = Globals.globals.history.size();
         DSchedule ds;
@@ -57,7 +91,7 @@ public class DScheduler {
             ds.nextMid = p.y;
         } else {
             ds = new DSchedule();
-            if(!Globals.globals.information.optimalDistributed)
+            if(!optimal)
                 ds.isRace = true;
             else
                 ds.isRace = false;
@@ -66,49 +100,85 @@ public class DScheduler {
             Pair p = next(pid,mid);
             ds.nextPid = p.x;
             ds.nextMid = p.y;
+            if(optimal){
+                ds.setEnabledQueues(pendingQueues());
+                ds.setQueue(((MessageQueue)((ActorQueues)q.get(0)).getQ().get(0)).getId());
+            }
             Globals.globals.history.add(ds);
             Globals.globals.path.add(ds,true);
         }
-        ActorQueues aq = (ActorQueues)q.get(pid);
-        chist.add(new ClockHistory(aq,ds));
-
-        Message m = (Message)aq.getAndRemove(mid);
-        if(aq.isEmpty()){
-            q.remove(pid);
+        if(optimal){
+            // the queue is chosen by id, as the positions may change under backtracking
+            MessageQueue mq = (MessageQueue)byId.get(new Integer(ds.queue));
+            deliver((ActorQueues)queues.get(mq.getReceiver()),mq,ds);
+        } else {
+            ActorQueues aq = (ActorQueues)q.get(pid);
+            deliver(aq,(MessageQueue)aq.getQ().get(mid),ds);
         }
+    }
 
-        if(k>=l && pid>1 && mid==0){
-            for(int j=0;j<pid;j++){
-                q.addLast(q.removeFirst());
+    private LinkedList pendingQueues(){
+        LinkedList ret = new LinkedList();
+        int sz = q.size();
+        for(int j=0;j<sz;j++){
+            ArrayList mqs = ((ActorQueues)q.get(j)).getQ();
+            int n = mqs.size();
+            for(int i=0;i<n;i++){
+                ret.add(new Integer(((MessageQueue)mqs.get(i)).getId()));
             }
         }
+        return ret;
+    }
 
+    private void deliver(ActorQueues aq,MessageQueue mq,DSchedule ds){
+        Actor a = aq.getActor();
+        Message m = (Message)aq.getAndRemove(mq);
+        if(mq.isEmpty()){
+            byId.remove(new Integer(mq.getId()));
+        }
+        if(aq.isEmpty()){
+            q.remove(aq);
+            queues.remove(a);
+        }
 
-        aq.getActor().maxVc(m.vc);
-        aq.getActor().receive(m);
+        // the receive is an event of a, so that a later send can tell
+        // whether it happened after it
+        a.maxVc(m.vc);
+        a.addOneToVc();
+        ArrayList h = (ArrayList)chist.get(a);
+        if(h==null){
+            h = new ArrayList();
+            chist.put(a,h);
+        }
+        if(Globals.globals.information.optimalDistributed){
+            checkAndSetRace(h,a,mq,m);
+        }
+        if(ds!=null){
+            h.add(new ClockHistory(a.getTime(a),mq,sent,ds));
+        }
+        a.receive(m);
     }
 
-    public void checkAndSetRace(Actor a,Actor to,int qid){
-        int sz = chist.size();
-        for(int j=0;j<sz;j++){
-            ClockHistory ch = (ClockHistory)chist.get(j);
-            Actor ra = ch.getActor();
-            DSchedule rs = ch.getDs();
-            IdentityHashMap rv = ch.getVc();
-            LinkedList mqs = ch.getQueues();
-            if(to==ra && a.isIndependent(rv)){
-                //System.out.println("Set true");
-                boolean found = false;
-                for (Iterator iterator = mqs.iterator(); !found && iterator.hasNext();) {
-                    MessageQueue mq = (MessageQueue) iterator.next();
-                    if(mq.equals(to,qid)){
-                        found = true;
-                    }
-                }
-                if(!found){
-//                    System.out.println("mqs "+mqs.size());
-                    rs.isRace=true;
-                }
+    /**
+     * Finds the last receive of a that races with the receive of m, that
+     * is, that did not happen before the send of m and is not of a message
+     * of the same queue, which must be received before m. The queue of m
+     * is then tried at the point of that receive. The receives of a are
+     * totally ordered, so that the search stops at the first receive that
+     * happened before the send of m.
+     */
+    private void checkAndSetRace(ArrayList h,Actor a,MessageQueue mq,Message m){
+        Integer time = m.vc==null ? null : (Integer)m.vc.get(a);
+        int t = time==null ? 0 : time.intValue();
+        for(int j=h.size()-1;j>=0;j--){
+            ClockHistory ch = (ClockHistory)h.get(j);
+            if(ch.getClock()<=t){
+                return;
+            }
+            if(ch.getQueue()!=mq){
+                ch.getDs().isRace = true;
+                ch.getDs().addBacktrack(mq.getId(),m.seq<ch.getSent());
+                return;
             }
         }
     }
@@ -116,8 +186,6 @@ public class DScheduler {
     private Pair next(int pid, int mid) {
         Pair ret = new Pair();
         ActorQueues aq = (ActorQueues)q.get(pid);
-        //System.out.println("pid = " + pid);
-        //System.out.println("mid = " + mid);
         if(q.size()==pid+1 && aq.size()==mid+1){
             ret.x = -1;
             ret.y = -1;
@@ -130,8 +198,6 @@ public class DScheduler {
                 ret.y = mid+1;
             }
         }
-        //System.out.println("ret.x = " + ret.x);
-        //System.out.println("ret.y = " + ret.y);
         return ret;
     }
 
@@ -11,4 +11,6 @@ import java.util.IdentityHashMap;
  */
 public class Message {
     public IdentityHashMap vc;
+    /** the number of messages sent before this one */
+    public int seq;
 }
@@ -11,15 +11,42 @@ import java.util.LinkedList;
  */
 public class MessageQueue {
     private int qid;
+    private Actor to;
     private Actor a;
     private LinkedList q;
+    private int id = -1;
 
-    public MessageQueue(Actor a, int qid) {
+    public MessageQueue(Actor to, Actor a, int qid) {
+        this.to = to;
         this.a = a;
         this.qid = qid;
         q = new LinkedList();
     }
 
+    /**
+     * @return the id given by DScheduler to this queue, which is the same
+     * in every execution that replays the deliveries before its creation.
+     */
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public Actor getReceiver() {
+        return to;
+    }
+
+    public Actor getSender() {
+        return a;
+    }
+
+    public int getQid() {
+        return qid;
+    }
+
     public boolean equals(Actor from, int qid) {
         return from==a && qid==this.qid;
     }
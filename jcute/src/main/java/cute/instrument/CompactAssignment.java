@@ -0,0 +1,94 @@
+package cute.instrument;
+
+import soot.*;
+import soot.jimple.*;
+import soot.util.Chain;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Instruments x = y and x = y op z, where x, y and z are numeric locals or
+ * constants, with a single call to Call.assign or Call.assignBinary instead
+ * of the loadAddress, loadValue, applyOp and store calls of ParseExpr.
+ * <p>
+ * The values are passed as doubles, as loadValue does, through two locals
+ * that are shared by the whole body. This keeps instrumented methods small
+ * enough for the JIT to compile and inline them.
+ */
+public class CompactAssignment {
+    /**
+     * @return true, if as was instrumented. Otherwise, false, and as must be
+     * instrumented with ParseExpr.
+     */
+    public static boolean instrument(Body b,AssignStmt as,Chain units,SymbolTable st,int lineNo){
+        Value left = as.getLeftOp();
+        Value right = as.getRightOp();
+        if(!(left instanceof Local) || !isNumeric(left)){
+            return false;
+        }
+        LinkedList args = new LinkedList();
+        SootMethodRef mr;
+        args.addLast(IntConstant.v(st.get(((Local)left).getName())));
+        if(isOperand(right)){
+            mr = Scene.v().getMethod("<cute.concolic.Call: void assign(int,int,double,int)>").makeRef();
+            addOperand(b,right,"__ct_a",units,as,st,args);
+        } else if((right instanceof AddExpr || right instanceof SubExpr || right instanceof MulExpr
+                || right instanceof CmpExpr || right instanceof CmpgExpr || right instanceof CmplExpr)
+                && isOperand(((BinopExpr)right).getOp1()) && isOperand(((BinopExpr)right).getOp2())
+                && !(((BinopExpr)right).getOp1() instanceof Constant
+                && ((BinopExpr)right).getOp2() instanceof Constant)){
+            mr = Scene.v().getMethod("<cute.concolic.Call: void assignBinary(int,java.lang.String,int,double,int,double,int)>").makeRef();
+            args.addLast(StringConstant.v(((BinopExpr)right).getSymbol().trim()));
+            addOperand(b,((BinopExpr)right).getOp1(),"__ct_a",units,as,st,args);
+            addOperand(b,((BinopExpr)right).getOp2(),"__ct_b",units,as,st,args);
+        } else {
+            return false;
+        }
+        args.addLast(IntConstant.v(lineNo));
+        units.insertBefore(Jimple.v().newInvokeStmt(Jimple.v().newStaticInvokeExpr(mr,args)),as);
+        return true;
+    }
+
+    private static boolean isNumeric(Value v){
+        Type t = v.getType();
+        return t instanceof IntType || t instanceof LongType || t instanceof ShortType
+                || t instanceof ByteType || t instanceof CharType || t instanceof FloatType
+                || t instanceof DoubleType;
+    }
+
+    private static boolean isOperand(Value v){
+        return (v instanceof Local || v instanceof NumericConstant) && isNumeric(v);
+    }
+
+    private static void addOperand(Body b,Value v,String name,Chain units,Stmt s,SymbolTable st,LinkedList args){
+        if(v instanceof Local){
+            Local tmp = getLocal(b,name);
+            units.insertBefore(Jimple.v().newAssignStmt(tmp,Jimple.v().newCastExpr(v,DoubleType.v())),s);
+            args.addLast(IntConstant.v(st.get(((Local)v).getName())));
+            args.addLast(tmp);
+        } else {
+            args.addLast(IntConstant.v(0));
+            args.addLast(DoubleConstant.v(value((NumericConstant)v)));
+        }
+    }
+
+    private static double value(NumericConstant c){
+        if(c instanceof IntConstant) return ((IntConstant)c).value;
+        if(c instanceof LongConstant) return ((LongConstant)c).value;
+        if(c instanceof FloatConstant) return ((FloatConstant)c).value;
+        return ((DoubleConstant)c).value;
+    }
+
+    private static Local getLocal(Body b,String name){
+        for (Iterator iterator = b.getLocals().iterator(); iterator.hasNext();) {
+            Local l = (Local) iterator.next();
+            if(l.getName().equals(name)){
+                return l;
+            }
+        }
+        Local l = Jimple.v().newLocal(name,DoubleType.v());
+        b.getLocals().add(l);
+        return l;
+    }
+}
@@ -0,0 +1,172 @@
+package cute.instrument;
+
+import soot.Body;
+import soot.PackManager;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.baf.Baf;
+import soot.baf.JasminClass;
+import soot.options.Options;
+import soot.util.JasminOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.security.ProtectionDomain;
+import java.util.Iterator;
+
+/**
+ * Instruments classes as they are loaded, instead of rewriting the whole
+ * application with CuteInstrumenter before the run.
+ * <p>
+ * Start the program under test with
+ * <pre>
+ *   java -javaagent:jcute.jar=MainClass MainClass
+ * </pre>
+ * where jcute.jar is packaged with META-INF/MANIFEST.MF of the sources, which
+ * names CuteAgent as its Premain-Class.
+ * The argument is the class whose main method is tested, as --app for
+ * CuteInstrumenter. Each class is loaded by Soot from the class path, given
+ * the same transformation as CuteInstrumenter, and assembled back into
+ * bytecode. All classes of the run share the symbol table of
+ * CuteInstrumenter, which the runtime uses instead of reading cuteSymbolTable.
+ * <p>
+ * The instrumented classes are kept in the directory named by the property
+ * cute.cache, by default cuteCache in the working directory (see
+ * InstrumentedClassCache), and Soot is only started for the classes that are
+ * not found in it. An empty cute.cache turns the cache off.
+ */
+public class CuteAgent implements ClassFileTransformer {
+    private static final String[] excluded = {
+        "cute/", "lpsolve/", "soot/", "jasmin/", "polyglot/", "argparser/",
+        "ccl/", "java/", "javax/", "sun/", "com/sun/", "jdk/",
+        "org/xml/", "org/w3c/", "org/ietf/", "org/omg/"
+    };
+
+    private boolean transforming = false;
+    private boolean sootLoaded = false;
+    private InstrumentedClassCache cache;
+    private String options;
+
+    public static void premain(String args, Instrumentation inst) {
+        String seq = System.getProperty("cute.sequential");
+        if (seq != null && seq.equals("true")) {
+            CuteInstrumenter.isConcurrent = false;
+        }
+        String taint = System.getProperty("cute.taint");
+        if (taint != null && taint.equals("true")) {
+            CuteInstrumenter.useTaint = true;
+        }
+        String compact = System.getProperty("cute.compact");
+        if (compact != null && compact.equals("true")) {
+            CuteInstrumenter.useCompact = true;
+        }
+        String lazy = System.getProperty("cute.lazy");
+        if (lazy != null && lazy.equals("true")) {
+            CuteInstrumenter.useLazy = true;
+        }
+        String virtual = System.getProperty("cute.virtual");
+        if (virtual != null && virtual.equals("true")) {
+            CuteInstrumenter.useVirtual = true;
+        }
+        CuteInstrumenter.addMainClass(args);
+        CuteAgent agent = new CuteAgent();
+        String dir = System.getProperty("cute.cache", "cuteCache");
+        if (dir.length() > 0) {
+            agent.cache = new InstrumentedClassCache(new File(dir));
+        }
+        agent.options = "sequential=" + !CuteInstrumenter.isConcurrent
+                + ":taint=" + CuteInstrumenter.useTaint
+                + ":compact=" + CuteInstrumenter.useCompact
+                + ":lazy=" + CuteInstrumenter.useLazy
+                + ":virtual=" + CuteInstrumenter.useVirtual;
+        for (int i = 0; i < excluded.length; i++) {
+            agent.options += ":x=" + excluded[i];
+        }
+        SymbolTable.session = CuteInstrumenter.v().st;
+        inst.addTransformer(agent);
+    }
+
+    public synchronized byte[] transform(ClassLoader loader, String className,
+                                         Class classBeingRedefined,
+                                         ProtectionDomain protectionDomain,
+                                         byte[] classfileBuffer) {
+        if (loader == null || className == null || transforming
+                || classBeingRedefined != null || isExcluded(className)) {
+            return null;
+        }
+        transforming = true;
+        try {
+            String name = className.replace('/', '.');
+            String key = null;
+            if (cache != null) {
+                key = InstrumentedClassCache.key(classfileBuffer, options
+                        + ":main=" + CuteInstrumenter.isMainClass(name));
+                byte[] bytes = cache.get(key);
+                if (bytes != null) {
+                    return bytes;
+                }
+            }
+            if (!sootLoaded) {
+                Options.v().set_keep_line_number(true);
+                Options.v().set_allow_phantom_refs(true);
+                Scene.v().loadClassAndSupport("cute.concolic.Call");
+                sootLoaded = true;
+            }
+            byte[] bytes = instrument(name);
+            if (cache != null && bytes != null) {
+                cache.put(key, bytes);
+            }
+            return bytes;
+        } catch (Throwable e) {
+            System.err.println("Cannot instrument " + className + ": " + e);
+            return null;
+        } finally {
+            transforming = false;
+        }
+    }
+
+    private static boolean isExcluded(String className) {
+        for (int i = 0; i < excluded.length; i++) {
+            if (className.startsWith(excluded[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] instrument(String className) {
+        SootClass c = Scene.v().loadClassAndSupport(className);
+        if (c.isPhantom()) {
+            return null;
+        }
+        c.setApplicationClass();
+        for (Iterator it = c.methodIterator(); it.hasNext();) {
+            SootMethod m = (SootMethod) it.next();
+            if (!m.isConcrete()) {
+                continue;
+            }
+            Body body = m.retrieveActiveBody();
+            CuteInstrumenter.v().transform(body, "jtp.instrumenter");
+            PackManager.v().getPack("jop").apply(body);
+            PackManager.v().getPack("jap").apply(body);
+            m.setActiveBody(Baf.v().newBody(body));
+            PackManager.v().getPack("bop").apply(m.getActiveBody());
+            PackManager.v().getPack("tag").apply(m.getActiveBody());
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                new JasminOutputStream(bytes)));
+        new JasminClass(c).print(writer);
+        // flushing assembles the class; closing would assemble it again
+        writer.flush();
+        for (Iterator it = c.methodIterator(); it.hasNext();) {
+            ((SootMethod) it.next()).releaseActiveBody();
+        }
+        return bytes.toByteArray();
+    }
+}
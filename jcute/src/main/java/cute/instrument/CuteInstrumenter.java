@@ -82,8 +82,16 @@ int f(int x,int y){
 public class CuteInstrumenter extends BodyTransformer {
     public SymbolTable st;
     public static boolean isConcurrent = true;
+    public static boolean useTaint = false;
+    public static boolean useCompact = false;
+    public static boolean useLazy = false;
+    /** run the threads of the program on virtual threads (cute.virtual) */
+    public static boolean useVirtual = false;
     private static CuteInstrumenter instance = new CuteInstrumenter();
-    private static String mainClass;
+    private static Set mainClasses = new HashSet();
+    /** true, if all the application classes are instrumented in one Soot run */
+    private static boolean wholeProgram = false;
+    private ProgramTaint program;
 
     private CuteInstrumenter() {
         st = new SymbolTable();
@@ -93,6 +101,17 @@ public class CuteInstrumenter extends BodyTransformer {
         return instance;
     }
 
+    /**
+     * @param name a class whose main method is tested, as given by --app.
+     */
+    public static void addMainClass(String name) {
+        mainClasses.add(name);
+    }
+
+    public static boolean isMainClass(String name) {
+        return mainClasses.contains(name);
+    }
+
     protected void internalTransform(Body body, String pn, Map map) {
         SootMethod thisMethod = body.getMethod();
         String cName = thisMethod.getDeclaringClass().getName();
@@ -102,8 +121,13 @@ public class CuteInstrumenter extends BodyTransformer {
         if (thisMethod.isAbstract()) {
             return;
         }
+        String mainClass = mainClasses.contains(cName) ? cName : null;
         int branchCount = 0;
         int tBanchCount = 0;
+        if (useTaint && wholeProgram && program == null) {
+            program = new ProgramTaint(Scene.v().getApplicationClasses());
+        }
+        TaintAnalysis taint = useTaint ? new TaintAnalysis(body, program) : null;
         Chain units = body.getUnits();
         Iterator stmtIt = units.snapshotIterator();
         while (stmtIt.hasNext()) {
@@ -126,12 +150,18 @@ public class CuteInstrumenter extends BodyTransformer {
             } else {
                 lineNo = ((LineNumberTag) s.getTags().get(0)).getLineNumber();
             }
+            if (useVirtual) {
+                RedirectThreadCalls.instrument(s);
+            }
             if (s instanceof EnterMonitorStmt || s instanceof ExitMonitorStmt) {
                 InstrumentMonitorStatements.instrument(s, units, isConcurrent,
                         lineNo);
             } else if (s instanceof AssignStmt) {
+                if (useLazy) {
+                    InstrumentLazyFieldAccess.instrument(s, units, st, lineNo);
+                }
                 InstrumentAssignmentStatement.instrument(s, body, units,
-                        isConcurrent, st, lineNo);
+                        isConcurrent, st, lineNo, taint, useCompact);
             } else if (s instanceof InvokeStmt) {
                 InstrumentInvokeStatement.instrument(s, body, units, st,
                         isConcurrent, lineNo);
@@ -145,15 +175,15 @@ public class CuteInstrumenter extends BodyTransformer {
             } else if (s instanceof IfStmt) {
                 branchCount = InstrumentIfStatement.instrument(
                         branchCount, tBanchCount, s, thisMethod, body, units,
-                        st, isConcurrent, lineNo);
+                        st, isConcurrent, lineNo, taint);
             } else if (s instanceof LookupSwitchStmt) {
                 branchCount = InstrumentLookupSwitchStatement.instrument(
                         branchCount, tBanchCount, s, thisMethod, body, units,
-                        st, isConcurrent, lineNo);
+                        st, isConcurrent, lineNo, taint);
             } else if (s instanceof TableSwitchStmt) {
                 branchCount = InstrumentTableSwitchStatement.instrument(
                         branchCount, tBanchCount, s, thisMethod, body, units,
-                        st, isConcurrent, lineNo);
+                        st, isConcurrent, lineNo, taint);
             }
         }
         WrapWholeBodyInTryCatch.instrument(body, thisMethod, isConcurrent, mainClass);
@@ -165,13 +195,47 @@ public class CuteInstrumenter extends BodyTransformer {
         if (seq != null && seq.equals("true")) {
             isConcurrent = false;
         }
+        String taint = System.getProperty("cute.taint");
+        if (taint != null && taint.equals("true")) {
+            useTaint = true;
+        }
+        String compact = System.getProperty("cute.compact");
+        if (compact != null && compact.equals("true")) {
+            useCompact = true;
+        }
+        String lazy = System.getProperty("cute.lazy");
+        if (lazy != null && lazy.equals("true")) {
+            useLazy = true;
+        }
+        String virtual = System.getProperty("cute.virtual");
+        if (virtual != null && virtual.equals("true")) {
+            useVirtual = true;
+        }
         for (int i = 0; i < args.length; i++) {
             String arg = args[i];
             if (arg.equals("--app")) {
-                mainClass = args[i + 1];
+                // every class after --app is a main under test
+                for (int j = i + 1; j < args.length && !args[j].startsWith("-"); j++) {
+                    mainClasses.add(args[j]);
+                }
+            }
+        }
+        if ("-".equals(System.getProperty("cute.classes"))) {
+            // the classes under test come as a jar on the standard input
+            List providers = new ArrayList();
+            try {
+                providers.add(new JarStreamClassProvider(System.in));
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(1);
             }
+            providers.add(new CoffiClassProvider());
+            providers.add(new JimpleClassProvider());
+            providers.add(new JavaClassProvider());
+            SourceLocator.v().setClassProviders(providers);
         }
         Scene.v().loadClassAndSupport("cute.concolic.Call");
+        wholeProgram = true;
         PackManager.v().getPack("jtp").add(new Transform("jtp.instrumenter", CuteInstrumenter.v()));
         soot.Main.main(args);
         try {
@@ -13,6 +13,17 @@ import soot.util.Chain;
  */
 public class InstrumentAssignmentStatement {
     public static void instrument(Stmt s, Body body, Chain units,boolean isConcurrent,SymbolTable st,int lineNo){
+        instrument(s,body,units,isConcurrent,st,lineNo,null,false);
+    }
+
+    /**
+     * Instruments the assignment s. If taint shows that the right hand side
+     * is concrete, only a store is added, to clear a symbolic value that the
+     * left hand side may still hold. If compact, simple arithmetic on locals
+     * is instrumented with CompactAssignment.
+     */
+    public static void instrument(Stmt s, Body body, Chain units,boolean isConcurrent,SymbolTable st,int lineNo,
+                                  TaintAnalysis taint,boolean compact){
         AssignStmt as = (AssignStmt)s;
         Value left = as.getLeftOp();
         if(left instanceof InstanceFieldRef){
@@ -29,9 +40,13 @@ public class InstrumentAssignmentStatement {
                 AddCallWithAddress.instrument(right,units,s,"readAccess",true,st,lineNo,false);
             }
         }
-        if(right instanceof InvokeExpr || right instanceof LengthExpr){
+        if(taint!=null && taint.isConcrete(as)){
+            if(taint.isTainted(left)){
+                AddCallWithAddress.instrument(left,units,s,"store",true,st,lineNo,false);
+            }
+        } else if(right instanceof InvokeExpr || right instanceof LengthExpr){
             ParseExpr.instrument(body,right,left,units,s,st,isConcurrent,lineNo,false);
-        } else {
+        } else if(!compact || !CompactAssignment.instrument(body,as,units,st,lineNo)){
             ParseExpr.instrument(body,right,left,units,s,st,isConcurrent,lineNo,false);
             AddCallWithAddress.instrument(left,units,s,"store",true,st,lineNo,false);
         }
@@ -16,10 +16,21 @@ public class InstrumentIfStatement {
     public static int instrument(int branchCount, int tBanchCount,
                                       Stmt s, SootMethod thisMethod, Body body, Chain units,
                                  SymbolTable st,boolean isConcurrent,int lineNo){
+        return instrument(branchCount,tBanchCount,s,thisMethod,body,units,st,isConcurrent,lineNo,null);
+    }
+
+    /**
+     * Instruments the branches of s. If taint shows that the condition is
+     * concrete, only the coverage calls are added.
+     */
+    public static int instrument(int branchCount, int tBanchCount,
+                                 Stmt s, SootMethod thisMethod, Body body, Chain units,
+                                 SymbolTable st,boolean isConcurrent,int lineNo,TaintAnalysis taint){
         IfStmt is = (IfStmt)s;
         Value cond = is.getCondition();
         if(cond instanceof BinopExpr){
-            ParseExpr.instrument(body,is.getCondition(),null,units,s,st,isConcurrent,lineNo,true);
+            if(taint==null || taint.isTainted(cond))
+                ParseExpr.instrument(body,is.getCondition(),null,units,s,st,isConcurrent,lineNo,true);
             branchCount++;
             Value v1 = StringConstant.v(thisMethod.getSignature());
             Value v2 = IntConstant.v(branchCount);
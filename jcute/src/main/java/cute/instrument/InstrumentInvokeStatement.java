@@ -4,6 +4,9 @@ import soot.jimple.*;
 import soot.*;
 import soot.util.Chain;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  *  .
  * User: Koushik Sen (ksen@cs.uiuc.edu)
@@ -69,10 +72,21 @@ public class InstrumentInvokeStatement {
                     && Utils.isThreadSubType(((InstanceInvokeExpr)right).getMethod().getDeclaringClass())){
                 AddCallWithObject.instrument(((InstanceInvokeExpr)right).getBase(),units,s,"startBefore",true,lineNo);
                 AddCallWithObject.instrument(((InstanceInvokeExpr)right).getBase(),units,s,"startAfter",false,lineNo);
+                if(CuteInstrumenter.useVirtual){
+                    replaceWithCall(s,"start",((InstanceInvokeExpr)right).getBase(),lineNo);
+                }
             } else if(right.getArgCount()==0 && name.equals("join") && right instanceof InstanceInvokeExpr
                     && Utils.isThreadSubType(((InstanceInvokeExpr)right).getMethod().getDeclaringClass())){
                 AddCallWithObject.instrument(((InstanceInvokeExpr)right).getBase(),units,s,"joinBefore",true,lineNo);
                 AddCallWithObject.instrument(((InstanceInvokeExpr)right).getBase(),units,s,"joinAfter",false,lineNo);
+                if(CuteInstrumenter.useVirtual){
+                    replaceWithCall(s,"join",((InstanceInvokeExpr)right).getBase(),lineNo);
+                }
+            } else if(CuteInstrumenter.useVirtual && right.getArgCount()>0 && name.equals("join")
+                    && right instanceof InstanceInvokeExpr
+                    && Utils.isThreadSubType(((InstanceInvokeExpr)right).getMethod().getDeclaringClass())){
+                // a timed join must wait for the thread that runs the Thread, too
+                replaceWithTimedJoin(s,(InstanceInvokeExpr)right,lineNo);
             } else {
                 ParseExpr.instrument(body,right,null,units,s,st,isConcurrent,lineNo,false);
             }
@@ -80,4 +94,27 @@ public class InstrumentInvokeStatement {
             ParseExpr.instrument(body,right,null,units,s,st,isConcurrent,lineNo,false);
         }
     }
+
+    /**
+     * Replaces the call in s by a call to cute.concolic.Call.methodName(base,lineNo),
+     * e.g., t.start() by Call.start(t,lineNo), which runs t on a virtual thread.
+     */
+    private static void replaceWithCall(Stmt s,String methodName,Value base,int lineNo){
+        SootMethodRef mr = Scene.v().getMethod("<cute.concolic.Call: void "+methodName+"(java.lang.Object,int)>").makeRef();
+        ((InvokeStmt)s).setInvokeExpr(Jimple.v().newStaticInvokeExpr(mr,base,IntConstant.v(lineNo)));
+    }
+
+    /**
+     * Replaces t.join(millis) or t.join(millis,nanos) in s by
+     * Call.join(t,millis,nanos,lineNo).
+     */
+    private static void replaceWithTimedJoin(Stmt s,InstanceInvokeExpr right,int lineNo){
+        SootMethodRef mr = Scene.v().getMethod("<cute.concolic.Call: void join(java.lang.Object,long,int,int)>").makeRef();
+        List args = new ArrayList();
+        args.add(right.getBase());
+        args.add(right.getArg(0));
+        args.add(right.getArgCount()>1?right.getArg(1):IntConstant.v(0));
+        args.add(IntConstant.v(lineNo));
+        ((InvokeStmt)s).setInvokeExpr(Jimple.v().newStaticInvokeExpr(mr,args));
+    }
 }
@@ -0,0 +1,46 @@
+package cute.instrument;
+
+import soot.ArrayType;
+import soot.RefType;
+import soot.Scene;
+import soot.SootField;
+import soot.SootMethodRef;
+import soot.Type;
+import soot.jimple.*;
+import soot.util.Chain;
+
+import java.util.LinkedList;
+
+/**
+ * Adds Call.lazyInput before each read or write of a reference or array
+ * field, so that the fields of object inputs can be initialized when they
+ * are first read (see the -z option). The field is given by its declaring
+ * class and its name, so that a field that hides one of a superclass is
+ * told apart from it.
+ */
+public class InstrumentLazyFieldAccess {
+    public static void instrument(Stmt s,Chain units,SymbolTable st,int lineNo){
+        AssignStmt as = (AssignStmt)s;
+        if(as.getRightOp() instanceof InstanceFieldRef){
+            addCall((InstanceFieldRef)as.getRightOp(),true,units,s,st,lineNo);
+        } else if(as.getLeftOp() instanceof InstanceFieldRef){
+            addCall((InstanceFieldRef)as.getLeftOp(),false,units,s,st,lineNo);
+        }
+    }
+
+    private static void addCall(InstanceFieldRef ref,boolean read,Chain units,Stmt s,SymbolTable st,int lineNo){
+        SootField field = ref.getField();
+        Type type = field.getType();
+        if(!(type instanceof RefType) && !(type instanceof ArrayType)){
+            return;
+        }
+        SootMethodRef mr = Scene.v().getMethod("<cute.concolic.Call: void lazyInput(java.lang.Object,java.lang.String,int,boolean,int)>").makeRef();
+        LinkedList args = new LinkedList();
+        args.addLast(ref.getBase());
+        args.addLast(StringConstant.v(field.getDeclaringClass().getName()));
+        args.addLast(IntConstant.v(st.get(field.getName())));
+        args.addLast(IntConstant.v(read?1:0));
+        args.addLast(IntConstant.v(lineNo));
+        units.insertBefore(Jimple.v().newInvokeStmt(Jimple.v().newStaticInvokeExpr(mr,args)),s);
+    }
+}
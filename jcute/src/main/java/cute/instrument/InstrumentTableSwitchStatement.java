@@ -17,6 +17,16 @@ public class InstrumentTableSwitchStatement {
     public static int instrument(int branchCount, int tBanchCount,
                                  Stmt s, SootMethod thisMethod, Body body, Chain units,
                                  SymbolTable st,boolean isConcurrent,int lineNo){
+        return instrument(branchCount,tBanchCount,s,thisMethod,body,units,st,isConcurrent,lineNo,null);
+    }
+
+    /**
+     * Instruments the branches of s. If taint shows that the condition is
+     * concrete, only the coverage calls are added.
+     */
+    public static int instrument(int branchCount, int tBanchCount,
+                                 Stmt s, SootMethod thisMethod, Body body, Chain units,
+                                 SymbolTable st,boolean isConcurrent,int lineNo,TaintAnalysis taint){
         TableSwitchStmt lss = (TableSwitchStmt)s;
         int sz = lss.getHighIndex();
         NopStmt ns = Jimple.v().newNopStmt();
@@ -36,7 +46,8 @@ public class InstrumentTableSwitchStatement {
             Stmt pos = Jimple.v().newInvokeStmt(Jimple.v().newStaticInvokeExpr(mr,args));
             mr = Scene.v().getMethod("<cute.concolic.Call: void branchNeg(java.lang.String,int,int,int)>").makeRef();
             Stmt neg = Jimple.v().newInvokeStmt(Jimple.v().newStaticInvokeExpr(mr,args));
-            ParseExpr.instrument(body,eq,null,units,s,st,isConcurrent,lineNo,true);
+            if(taint==null || taint.isTainted(lss.getKey()))
+                ParseExpr.instrument(body,eq,null,units,s,st,isConcurrent,lineNo,true);
             IfStmt is2 = Jimple.v().newIfStmt(eq,pos);
             units.insertBefore(is2,s);
             units.insertBefore(neg,s);
@@ -0,0 +1,122 @@
+package cute.instrument;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Keeps the classes instrumented by CuteAgent in a directory, so that the
+ * next method or the next campaign only instruments the classes that changed.
+ * <p>
+ * A class is stored under a hash of its original bytecode and of the options
+ * of the instrumenter. The symbol table is stored in the same directory and
+ * only grows, so the ids used by a stored class stay valid in later runs.
+ */
+public class InstrumentedClassCache {
+    private static final String TABLE = "cuteSymbolTable";
+    private File dir;
+
+    /**
+     * Opens the cache in dir, and makes the instrumenter continue its symbol
+     * table. If the symbol table is missing, the stored classes are dropped.
+     */
+    public InstrumentedClassCache(File dir) {
+        this.dir = dir;
+        dir.mkdirs();
+        File table = new File(dir, TABLE);
+        if (table.exists()) {
+            try {
+                ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(table)));
+                try {
+                    CuteInstrumenter.v().st = (SymbolTable) in.readObject();
+                    return;
+                } finally {
+                    in.close();
+                }
+            } catch (Exception e) {
+                System.err.println("Cannot read " + table + ": " + e);
+            }
+        }
+        File[] files = dir.listFiles();
+        for (int i = 0; i < files.length; i++) {
+            if (files[i].getName().endsWith(".class")) {
+                files[i].delete();
+            }
+        }
+    }
+
+    /**
+     * @return the key of a class with the given bytecode, instrumented with
+     * the given options.
+     */
+    public static String key(byte[] classfile, String options) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            md.update(classfile);
+            md.update(options.getBytes());
+            byte[] digest = md.digest();
+            StringBuffer sb = new StringBuffer();
+            for (int i = 0; i < digest.length; i++) {
+                sb.append(Integer.toHexString((digest[i] & 0xff) | 0x100).substring(1));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the instrumented class stored under key, or null, if there is
+     * none.
+     */
+    public byte[] get(String key) {
+        File f = new File(dir, key + ".class");
+        if (!f.exists()) {
+            return null;
+        }
+        try {
+            byte[] bytes = new byte[(int) f.length()];
+            DataInputStream in = new DataInputStream(new FileInputStream(f));
+            try {
+                in.readFully(bytes);
+            } finally {
+                in.close();
+            }
+            return bytes;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores an instrumented class under key, together with the symbol table
+     * it uses.
+     */
+    public void put(String key, byte[] bytes) {
+        try {
+            File tmp = new File(dir, TABLE + ".tmp");
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                out.writeObject(CuteInstrumenter.v().st);
+            } finally {
+                out.close();
+            }
+            rename(tmp, new File(dir, TABLE));
+            tmp = new File(dir, key + ".tmp");
+            OutputStream bout = new FileOutputStream(tmp);
+            try {
+                bout.write(bytes);
+            } finally {
+                bout.close();
+            }
+            rename(tmp, new File(dir, key + ".class"));
+        } catch (IOException e) {
+            System.err.println("Cannot write to " + dir + ": " + e);
+        }
+    }
+
+    private static void rename(File from, File to) {
+        to.delete();
+        from.renameTo(to);
+    }
+}
@@ -0,0 +1,57 @@
+package cute.instrument;
+
+import soot.ClassProvider;
+import soot.ClassSource;
+import soot.CoffiClassSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+
+/**
+ * Gives Soot the classes of a jar read from a stream, e.g. the standard
+ * input, so that classes compiled in memory by another process need not be
+ * written to disk before they are instrumented.
+ */
+public class JarStreamClassProvider implements ClassProvider {
+    private Map classes = new HashMap();
+
+    /**
+     * Reads all the classes of the jar in in, and closes it.
+     */
+    public JarStreamClassProvider(InputStream in) throws IOException {
+        JarInputStream jar = new JarInputStream(in);
+        try {
+            byte[] buf = new byte[4096];
+            JarEntry e;
+            while ((e = jar.getNextJarEntry()) != null) {
+                String name = e.getName();
+                if (!name.endsWith(".class")) {
+                    continue;
+                }
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                int n;
+                while ((n = jar.read(buf)) > 0) {
+                    bytes.write(buf, 0, n);
+                }
+                classes.put(name.substring(0, name.length() - 6).replace('/', '.'),
+                        bytes.toByteArray());
+            }
+        } finally {
+            jar.close();
+        }
+    }
+
+    public ClassSource find(String className) {
+        byte[] bytes = (byte[]) classes.get(className);
+        if (bytes == null) {
+            return null;
+        }
+        return new CoffiClassSource(className, new ByteArrayInputStream(bytes));
+    }
+}
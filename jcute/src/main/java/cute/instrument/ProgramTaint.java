@@ -0,0 +1,339 @@
+package cute.instrument;
+
+import soot.*;
+import soot.jimple.*;
+
+import java.util.*;
+
+/**
+ * Finds the values of the whole program that may be symbolic, starting from
+ * the calls to cute.Input.
+ * <p>
+ * Every method gets a summary of which of its parameters, this and return
+ * value may be symbolic, and the summaries are propagated through the calls
+ * until nothing changes. Calls are resolved by subsignature over the
+ * application classes. Fields are told apart by name and type, and all
+ * array elements are one location. A method that no application code calls,
+ * or that overrides a library method, can be called from the library with
+ * any argument, so its parameters and this may be symbolic. The result of a
+ * call into the library may be symbolic if one of its arguments is. If the
+ * program asks for input objects, every instance field may be symbolic, as
+ * jCUTE fills the fields of these objects with inputs.
+ * <p>
+ * The analysis is flow-insensitive. It needs the bodies of all application
+ * classes, so it is only used when the classes are instrumented in one Soot
+ * run.
+ */
+public class ProgramTaint {
+    private Map summaries = new HashMap();
+    private Map bySubSignature = new HashMap();
+    private Map locals = new HashMap();
+    private Set fields = new HashSet();
+    private boolean arrays = false;
+    private boolean instanceFields = false;
+    private boolean changed;
+
+    /**
+     * What a method may receive or return symbolic.
+     */
+    private static class Summary {
+        boolean[] params;
+        boolean self;
+        boolean ret;
+
+        Summary(int n) {
+            params = new boolean[n];
+        }
+    }
+
+    /**
+     * @param classes the application classes, whose concrete methods are
+     * analyzed.
+     */
+    public ProgramTaint(Collection classes) {
+        List bodies = new ArrayList();
+        for (Iterator it = classes.iterator(); it.hasNext();) {
+            SootClass c = (SootClass) it.next();
+            if (c.isPhantom() || c.getName().startsWith("cute.")) {
+                continue;
+            }
+            for (Iterator mit = c.getMethods().iterator(); mit.hasNext();) {
+                SootMethod m = (SootMethod) mit.next();
+                if (!m.isConcrete()) {
+                    continue;
+                }
+                bodies.add(m.retrieveActiveBody());
+                summaries.put(m, new Summary(m.getParameterCount()));
+                List same = (List) bySubSignature.get(m.getSubSignature());
+                if (same == null) {
+                    same = new ArrayList();
+                    bySubSignature.put(m.getSubSignature(), same);
+                }
+                same.add(m);
+            }
+        }
+        Set called = new HashSet();
+        for (Iterator it = bodies.iterator(); it.hasNext();) {
+            Body body = (Body) it.next();
+            for (Iterator uit = body.getUnits().iterator(); uit.hasNext();) {
+                Stmt s = (Stmt) uit.next();
+                if (s.containsInvokeExpr()) {
+                    called.addAll(targets(s.getInvokeExpr()));
+                }
+            }
+        }
+        for (Iterator it = summaries.keySet().iterator(); it.hasNext();) {
+            SootMethod m = (SootMethod) it.next();
+            if (!called.contains(m) || overridesLibrary(m)) {
+                Summary sum = (Summary) summaries.get(m);
+                Arrays.fill(sum.params, true);
+                sum.self = true;
+            }
+        }
+        changed = true;
+        while (changed) {
+            changed = false;
+            for (Iterator it = bodies.iterator(); it.hasNext();) {
+                propagate((Body) it.next());
+            }
+        }
+    }
+
+    /**
+     * @return the locals of body that may hold a symbolic value, or null, if
+     * body was not analyzed.
+     */
+    Set getTainted(Body body) {
+        return (Set) locals.get(body);
+    }
+
+    /**
+     * @param v a value read in body, whose tainted locals are tainted.
+     * @return true, if v may be symbolic when evaluated.
+     */
+    boolean isTainted(Value v, Set tainted) {
+        if (v instanceof Local) {
+            return tainted.contains(v);
+        } else if (v instanceof Constant || v instanceof NewExpr) {
+            return false;
+        } else if (v instanceof BinopExpr) {
+            return isTainted(((BinopExpr) v).getOp1(), tainted)
+                    || isTainted(((BinopExpr) v).getOp2(), tainted);
+        } else if (v instanceof NegExpr) {
+            return isTainted(((NegExpr) v).getOp(), tainted);
+        } else if (v instanceof CastExpr) {
+            return isTainted(((CastExpr) v).getOp(), tainted);
+        } else if (v instanceof InstanceOfExpr) {
+            return isTainted(((InstanceOfExpr) v).getOp(), tainted);
+        } else if (v instanceof InstanceFieldRef) {
+            return instanceFields || fields.contains(fieldKey((FieldRef) v));
+        } else if (v instanceof StaticFieldRef) {
+            return fields.contains(fieldKey((FieldRef) v));
+        } else if (v instanceof ArrayRef) {
+            return arrays;
+        } else if (v instanceof InvokeExpr) {
+            return isTainted((InvokeExpr) v, tainted);
+        }
+        return true;
+    }
+
+    /**
+     * @param body a body of an application method.
+     * @param s an identity statement of body.
+     * @return true, if the value s defines may be symbolic.
+     */
+    boolean isTainted(Body body, IdentityStmt s) {
+        Summary sum = (Summary) summaries.get(body.getMethod());
+        Value right = s.getRightOp();
+        if (sum == null) {
+            return true;
+        } else if (right instanceof ParameterRef) {
+            return sum.params[((ParameterRef) right).getIndex()];
+        } else if (right instanceof ThisRef) {
+            return sum.self;
+        }
+        return true;
+    }
+
+    private boolean isTainted(InvokeExpr ie, Set tainted) {
+        String c = ie.getMethodRef().declaringClass().getName();
+        if (c.equals("cute.Input") || c.equals("cute.concolic.input.InputImpl")) {
+            return true;
+        }
+        List targets = targets(ie);
+        if ((targets.isEmpty() || isVirtual(ie))
+                && isTaintedArgument(ie, tainted)) {
+            return true;
+        }
+        for (Iterator it = targets.iterator(); it.hasNext();) {
+            if (((Summary) summaries.get(it.next())).ret) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isTaintedArgument(InvokeExpr ie, Set tainted) {
+        if (ie instanceof InstanceInvokeExpr
+                && isTainted(((InstanceInvokeExpr) ie).getBase(), tainted)) {
+            return true;
+        }
+        for (int i = 0; i < ie.getArgCount(); i++) {
+            if (isTainted(ie.getArg(i), tainted)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Recomputes the tainted locals of body and passes what it may make
+     * symbolic on to the heap, the methods it calls and its own summary.
+     */
+    private void propagate(Body body) {
+        Set tainted = (Set) locals.get(body);
+        if (tainted == null) {
+            tainted = new HashSet();
+            locals.put(body, tainted);
+        }
+        boolean local = true;
+        while (local) {
+            local = false;
+            for (Iterator it = body.getUnits().iterator(); it.hasNext();) {
+                Stmt s = (Stmt) it.next();
+                if (!(s instanceof DefinitionStmt)) {
+                    continue;
+                }
+                Value left = ((DefinitionStmt) s).getLeftOp();
+                if (!(left instanceof Local) || tainted.contains(left)) {
+                    continue;
+                }
+                if (s instanceof IdentityStmt ? isTainted(body, (IdentityStmt) s)
+                        : isTainted(((DefinitionStmt) s).getRightOp(), tainted)) {
+                    tainted.add(left);
+                    local = true;
+                }
+            }
+        }
+        Summary own = (Summary) summaries.get(body.getMethod());
+        for (Iterator it = body.getUnits().iterator(); it.hasNext();) {
+            Stmt s = (Stmt) it.next();
+            if (s instanceof AssignStmt) {
+                Value left = ((AssignStmt) s).getLeftOp();
+                if (isTainted(((AssignStmt) s).getRightOp(), tainted)) {
+                    if (left instanceof FieldRef
+                            && fields.add(fieldKey((FieldRef) left))) {
+                        changed = true;
+                    } else if (left instanceof ArrayRef && !arrays) {
+                        arrays = true;
+                        changed = true;
+                    }
+                }
+            } else if (s instanceof ReturnStmt) {
+                if (!own.ret && isTainted(((ReturnStmt) s).getOp(), tainted)) {
+                    own.ret = true;
+                    changed = true;
+                }
+            }
+            if (s.containsInvokeExpr()) {
+                propagate(s.getInvokeExpr(), tainted);
+            }
+        }
+    }
+
+    private void propagate(InvokeExpr ie, Set tainted) {
+        String name = ie.getMethodRef().name();
+        String c = ie.getMethodRef().declaringClass().getName();
+        if ((c.equals("cute.Input") || c.equals("cute.concolic.input.InputImpl"))
+                && (name.equals("Object") || name.equals("ObjectShallow"))
+                && !instanceFields) {
+            instanceFields = true;
+            arrays = true;
+            changed = true;
+        }
+        boolean self = ie instanceof InstanceInvokeExpr
+                && isTainted(((InstanceInvokeExpr) ie).getBase(), tainted);
+        for (Iterator it = targets(ie).iterator(); it.hasNext();) {
+            Summary sum = (Summary) summaries.get(it.next());
+            if (self && !sum.self) {
+                sum.self = true;
+                changed = true;
+            }
+            for (int i = 0; i < ie.getArgCount(); i++) {
+                if (!sum.params[i] && isTainted(ie.getArg(i), tainted)) {
+                    sum.params[i] = true;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the analyzed methods ie may call.
+     */
+    private List targets(InvokeExpr ie) {
+        SootMethodRef ref = ie.getMethodRef();
+        if (!isVirtual(ie)) {
+            SootMethod m;
+            try {
+                m = ref.resolve();
+            } catch (RuntimeException e) {
+                return Collections.EMPTY_LIST;
+            }
+            return summaries.containsKey(m) ? Collections.singletonList(m)
+                    : Collections.EMPTY_LIST;
+        }
+        List same = (List) bySubSignature.get(ref.getSubSignature().getString());
+        if (same == null) {
+            return Collections.EMPTY_LIST;
+        }
+        List ret = new ArrayList();
+        for (Iterator it = same.iterator(); it.hasNext();) {
+            SootMethod m = (SootMethod) it.next();
+            if (!m.isStatic()) {
+                ret.add(m);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return true, if the class of the receiver selects the method ie calls,
+     * which may then also be a library method.
+     */
+    private static boolean isVirtual(InvokeExpr ie) {
+        return ie instanceof VirtualInvokeExpr || ie instanceof InterfaceInvokeExpr;
+    }
+
+    /**
+     * @return true, if a library class or interface m's class extends
+     * declares m, so that the library may call m.
+     */
+    private static boolean overridesLibrary(SootMethod m) {
+        if (m.isStatic() || m.isPrivate() || m.getName().equals("<init>")) {
+            return false;
+        }
+        LinkedList todo = new LinkedList();
+        Set seen = new HashSet();
+        todo.add(m.getDeclaringClass());
+        while (!todo.isEmpty()) {
+            SootClass c = (SootClass) todo.removeFirst();
+            if (!seen.add(c)) {
+                continue;
+            }
+            if (c != m.getDeclaringClass() && !c.isApplicationClass()
+                    && c.declaresMethod(m.getSubSignature())) {
+                return true;
+            }
+            if (c.hasSuperclass()) {
+                todo.add(c.getSuperclass());
+            }
+            todo.addAll(c.getInterfaces());
+        }
+        return false;
+    }
+
+    private static String fieldKey(FieldRef f) {
+        return f.getFieldRef().type() + " " + f.getFieldRef().name();
+    }
+}
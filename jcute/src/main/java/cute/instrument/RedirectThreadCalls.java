@@ -0,0 +1,50 @@
+package cute.instrument;
+
+import soot.Scene;
+import soot.SootMethodRef;
+import soot.jimple.InstanceInvokeExpr;
+import soot.jimple.InvokeExpr;
+import soot.jimple.Jimple;
+import soot.jimple.StaticInvokeExpr;
+import soot.jimple.Stmt;
+
+/**
+ * With -Dcute.virtual=true, a Thread of the program is run by another
+ * thread and never starts itself (see Call.start). Replaces the calls that
+ * ask a Thread about its thread by calls to cute.concolic.Call that ask the
+ * thread that runs it, e.g., t.isAlive() by Call.isAlive(t), and
+ * Thread.currentThread() by Call.currentThread(), which gives back the
+ * Thread of the program.
+ */
+public class RedirectThreadCalls {
+    public static void instrument(Stmt s){
+        if(!s.containsInvokeExpr()){
+            return;
+        }
+        InvokeExpr ie = s.getInvokeExpr();
+        String name = ie.getMethodRef().name();
+        if(ie instanceof StaticInvokeExpr){
+            if(ie.getArgCount()==0 && name.equals("currentThread")
+                    && ie.getMethodRef().declaringClass().getName().equals("java.lang.Thread")){
+                SootMethodRef mr = Scene.v().getMethod("<cute.concolic.Call: java.lang.Thread currentThread()>").makeRef();
+                s.getInvokeExprBox().setValue(Jimple.v().newStaticInvokeExpr(mr));
+            }
+        } else if(ie instanceof InstanceInvokeExpr && ie.getArgCount()==0
+                && Utils.isThreadSubType(ie.getMethod().getDeclaringClass())){
+            String sig;
+            if(name.equals("isAlive")){
+                sig = "<cute.concolic.Call: boolean isAlive(java.lang.Object)>";
+            } else if(name.equals("getState")){
+                sig = "<cute.concolic.Call: java.lang.Thread$State getState(java.lang.Object)>";
+            } else if(name.equals("interrupt")){
+                sig = "<cute.concolic.Call: void interrupt(java.lang.Object)>";
+            } else if(name.equals("isInterrupted")){
+                sig = "<cute.concolic.Call: boolean isInterrupted(java.lang.Object)>";
+            } else {
+                return;
+            }
+            SootMethodRef mr = Scene.v().getMethod(sig).makeRef();
+            s.getInvokeExprBox().setValue(Jimple.v().newStaticInvokeExpr(mr,((InstanceInvokeExpr)ie).getBase()));
+        }
+    }
+}
@@ -4,6 +4,8 @@ package cute.instrument;
  * Author: Koushik Sen <ksen@cs.uiuc.edu>
  */
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -15,17 +17,23 @@ public class SymbolTable implements Serializable {
     private static final long serialVersionUID = -1721540850266275071L;
     private HashMap st;
     private HashMap revMap;
+    /**
+     * The table of the classes instrumented at load time by CuteAgent, or
+     * null, if the classes were instrumented before the run.
+     */
+    public static SymbolTable session;
 
 
     public SymbolTable() {
         this.st = new HashMap();
     }
 
-    public int get(String s){
+    public synchronized int get(String s){
         Integer ret = (Integer)st.get(s);
         if(ret!= null) return  ret.intValue();
         int i = st.size()+1;
         st.put(s,new Integer(i));
+        if(revMap!=null) revMap.put(new Integer(i),s);
         return i;
     }
 
@@ -33,7 +41,7 @@ public class SymbolTable implements Serializable {
         return st.toString();
     }
 
-    public void reverseMap() {
+    public synchronized void reverseMap() {
         revMap = new HashMap();
         for (Iterator iterator = st.keySet().iterator(); iterator.hasNext();) {
             Object o = iterator.next();
@@ -41,7 +49,11 @@ public class SymbolTable implements Serializable {
         }
     }
 
-    public String getReverse(int i){
+    public synchronized String getReverse(int i){
         return (String)revMap.get(new Integer(i));
     }
+
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+    }
 }
@@ -0,0 +1,98 @@
+package cute.instrument;
+
+import soot.Body;
+import soot.Local;
+import soot.Value;
+import soot.jimple.*;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Finds the locals of a method body that can never hold a symbolic value.
+ * <p>
+ * A local may hold a symbolic value, if it is defined from a parameter, this,
+ * a caught exception, a field, an array element, the result of a call or an
+ * expression over such a local. Values coming from other methods or from the
+ * heap are always assumed symbolic, so the analysis is flow-insensitive and
+ * does not need the rest of the program.
+ * <p>
+ * If the whole program was analyzed by ProgramTaint, its summaries of the
+ * parameters, fields and calls are used instead.
+ * <p>
+ * Statements that only involve untainted values need no symbolic
+ * instrumentation.
+ */
+public class TaintAnalysis {
+    private Set tainted;
+    private ProgramTaint program;
+
+    /**
+     * @param body the body to analyze.
+     * @param program the analysis of the whole program, or null, if only
+     * body is known.
+     */
+    public TaintAnalysis(Body body, ProgramTaint program) {
+        if (program != null && program.getTainted(body) != null) {
+            this.program = program;
+            tainted = program.getTainted(body);
+            return;
+        }
+        tainted = new HashSet();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Iterator iterator = body.getUnits().iterator(); iterator.hasNext();) {
+                Stmt s = (Stmt) iterator.next();
+                if (!(s instanceof DefinitionStmt)) {
+                    continue;
+                }
+                Value left = ((DefinitionStmt) s).getLeftOp();
+                if (!(left instanceof Local) || tainted.contains(left)) {
+                    continue;
+                }
+                if (s instanceof IdentityStmt
+                        || isTainted(((DefinitionStmt) s).getRightOp())) {
+                    tainted.add(left);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param v a value used in the body.
+     * @return true, if v may be symbolic when evaluated.
+     */
+    public boolean isTainted(Value v) {
+        if (program != null) {
+            return program.isTainted(v, tainted);
+        } else if (v instanceof Local) {
+            return tainted.contains(v);
+        } else if (v instanceof Constant || v instanceof NewExpr) {
+            return false;
+        } else if (v instanceof BinopExpr) {
+            return isTainted(((BinopExpr) v).getOp1())
+                    || isTainted(((BinopExpr) v).getOp2());
+        } else if (v instanceof NegExpr) {
+            return isTainted(((NegExpr) v).getOp());
+        } else if (v instanceof CastExpr) {
+            return isTainted(((CastExpr) v).getOp());
+        } else if (v instanceof InstanceOfExpr) {
+            return isTainted(((InstanceOfExpr) v).getOp());
+        }
+        return true;
+    }
+
+    /**
+     * @param as an assignment of the body.
+     * @return true, if as can neither read nor write a symbolic value into a
+     * local.
+     */
+    public boolean isConcrete(AssignStmt as) {
+        Value right = as.getRightOp();
+        return !(right instanceof InvokeExpr || right instanceof NewArrayExpr
+                || right instanceof LengthExpr) && !isTainted(right);
+    }
+}
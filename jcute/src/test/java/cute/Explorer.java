@@ -0,0 +1,99 @@
+package cute;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Explores a program the way jCUTE does: runs its main class in a fresh JVM
+ * again and again, in a directory of its own that keeps the files passed
+ * from one execution to the next, until an execution exits with
+ * {@link Cute#EXIT_COMPLETE}.
+ */
+public class Explorer {
+    private final String main;
+    private final String args;
+    private final String prefix;
+
+    /**
+     * @param main   the main class to run.
+     * @param args   the options, as given in cute.args.
+     * @param prefix the prefix of the line with the outcome of an execution.
+     */
+    public Explorer(String main, String args, String prefix) {
+        this.main = main;
+        this.args = args;
+        this.prefix = prefix;
+    }
+
+    /**
+     * @param maxRuns the number of executions after which to give up.
+     * @return the outcome of each execution, in order, or null for an
+     * execution that printed none.
+     * @throws IllegalStateException if the search is not complete after
+     *                               maxRuns executions.
+     */
+    public List explore(int maxRuns) throws IOException, InterruptedException {
+        File dir = File.createTempFile("cute", "");
+        dir.delete();
+        dir.mkdir();
+        List outcomes = new ArrayList();
+        try {
+            for (int i = 0; i < maxRuns; i++) {
+                String[] outcome = new String[1];
+                int exit = run(dir, outcome);
+                outcomes.add(outcome[0]);
+                if ((exit & Cute.EXIT_COMPLETE) != 0) {
+                    return outcomes;
+                }
+            }
+        } finally {
+            File[] files = dir.listFiles();
+            for (int i = 0; i < files.length; i++) {
+                files[i].delete();
+            }
+            dir.delete();
+        }
+        throw new IllegalStateException(main + " is not explored after "
+                + maxRuns + " executions");
+    }
+
+    /**
+     * @return the classpath of this JVM, with absolute paths, since the
+     * executions run in another directory.
+     */
+    private static String classpath() {
+        String[] entries = System.getProperty("java.class.path").split(File.pathSeparator);
+        StringBuffer cp = new StringBuffer();
+        for (int i = 0; i < entries.length; i++) {
+            if (i > 0) {
+                cp.append(File.pathSeparator);
+            }
+            cp.append(new File(entries[i]).getAbsolutePath());
+        }
+        return cp.toString();
+    }
+
+    private int run(File dir, String[] outcome) throws IOException, InterruptedException {
+        ProcessBuilder pb = new ProcessBuilder(new String[]{
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                "-Dcute.args=" + args,
+                "-cp", classpath(),
+                main});
+        pb.directory(dir);
+        pb.redirectErrorStream(true);
+        Process p = pb.start();
+        BufferedReader in = new BufferedReader(new InputStreamReader(p.getInputStream()));
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.startsWith(prefix)) {
+                outcome[0] = line.substring(prefix.length());
+            }
+        }
+        in.close();
+        return p.waitFor();
+    }
+}
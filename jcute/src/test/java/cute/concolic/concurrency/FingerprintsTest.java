@@ -0,0 +1,73 @@
+package cute.concolic.concurrency;
+
+import cute.Explorer;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Regression test for the pruning of scheduling points by fingerprints (-f).
+ */
+public class FingerprintsTest extends TestCase {
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public FingerprintsTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(FingerprintsTest.class);
+    }
+
+    private static List explore(Class main, String prefix, String args)
+            throws Exception {
+        final List lines = new Explorer(main.getName(), args, prefix)
+                .explore(200);
+        assertFalse("An execution printed nothing.", lines.contains(null));
+        return lines;
+    }
+
+    private static int outcomes(String args) throws Exception {
+        return new HashSet(explore(ReadsRaceWrites.class, "READS ", args))
+                .size();
+    }
+
+    /**
+     * Each of the 20 sequences of values that three reads racing three
+     * writes can see is reached.
+     */
+    public void testAllOutcomes() throws Exception {
+        assertEquals("Incorrect number of outcomes.", 20, outcomes(""));
+    }
+
+    /**
+     * A state is only pruned if an earlier execution reached it, so no
+     * outcome is lost.
+     */
+    public void testAllOutcomesWithFingerprints() throws Exception {
+        assertEquals("Fingerprints pruned an outcome.", 20, outcomes("-f"));
+    }
+
+    /**
+     * The executions that only differ in the order of steps on x and y
+     * reach the same states, so fewer are run, and they see the same
+     * outcomes.
+     */
+    public void testFewerExecutionsWithFingerprints() throws Exception {
+        final List all = explore(IndependentSteps.class, "STATE ", "");
+        final List pruned = explore(IndependentSteps.class, "STATE ", "-f");
+        assertTrue("Fingerprints pruned no execution.",
+                pruned.size() < all.size());
+        assertEquals("Fingerprints changed the outcomes.", new HashSet(all),
+                new HashSet(pruned));
+    }
+}
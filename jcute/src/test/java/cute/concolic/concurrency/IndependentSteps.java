@@ -0,0 +1,59 @@
+package cute.concolic.concurrency;
+
+import cute.concolic.Call;
+
+/**
+ * Two threads read and write x, and a third reads y, which the first writes
+ * last. Many interleavings only differ in the order of steps on x and y.
+ * Prints the values each thread read and the final values of x and y.
+ */
+public class IndependentSteps {
+    static int x;
+    static int y;
+    static String[] reads = {"", "", ""};
+
+    private static Thread thread(final int id) {
+        return new Thread() {
+            public void run() {
+                Call.startAfter(this, 1);
+                if (id == 0) {
+                    Call.readAccess(1, 2, 2);
+                    reads[0] += x;
+                    Call.writeAccess(1, 2, 3);
+                    x = 1;
+                    Call.writeAccess(1, 3, 4);
+                    y = 1;
+                } else if (id == 1) {
+                    Call.readAccess(1, 2, 5);
+                    reads[1] += x;
+                    Call.writeAccess(1, 2, 6);
+                    x = 2;
+                    Call.readAccess(1, 2, 7);
+                    reads[1] += x;
+                } else {
+                    Call.readAccess(1, 3, 8);
+                    reads[2] += y;
+                }
+                Call.endBefore(9);
+            }
+        };
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        cute.instrument.SymbolTable.session = new cute.instrument.SymbolTable();
+        Thread[] threads = new Thread[3];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = thread(i);
+            Call.startBefore(threads[i], 10);
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            Call.joinBefore(threads[i], 11);
+            threads[i].join();
+            Call.joinAfter(threads[i], 12);
+        }
+        System.out.println("STATE " + reads[0] + "|" + reads[1] + "|"
+                + reads[2] + " x=" + x + " y=" + y);
+        Call.endBefore(-1);
+    }
+}
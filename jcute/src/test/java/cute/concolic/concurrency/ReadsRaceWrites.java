@@ -0,0 +1,37 @@
+package cute.concolic.concurrency;
+
+import cute.concolic.Call;
+
+/**
+ * A thread writes x three times while the main thread reads it three times.
+ * Prints the values read, of which there are 20 sequences.
+ */
+public class ReadsRaceWrites {
+    static int x;
+
+    public static void main(String[] args) throws InterruptedException {
+        cute.instrument.SymbolTable.session = new cute.instrument.SymbolTable();
+        Thread t = new Thread() {
+            public void run() {
+                Call.startAfter(this, 1);
+                for (int i = 0; i < 3; i++) {
+                    Call.writeAccess(1, 2, 2);
+                    x++;
+                }
+                Call.endBefore(3);
+            }
+        };
+        Call.startBefore(t, 4);
+        t.start();
+        String reads = "";
+        for (int i = 0; i < 3; i++) {
+            Call.readAccess(1, 2, 5);
+            reads += x;
+        }
+        Call.joinBefore(t, 6);
+        t.join();
+        Call.joinAfter(t, 7);
+        System.out.println("READS " + reads);
+        Call.endBefore(-1);
+    }
+}
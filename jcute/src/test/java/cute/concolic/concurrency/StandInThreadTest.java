@@ -0,0 +1,90 @@
+package cute.concolic.concurrency;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Unit test for the Thread of the program that another thread runs in its
+ * place, as a virtual thread does with -Dcute.virtual=true. A platform
+ * thread stands in for the virtual thread, so that the test also runs on
+ * JVMs where VirtualThreads is not available.
+ */
+public class StandInThreadTest extends TestCase {
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public StandInThreadTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(StandInThreadTest.class);
+    }
+
+    private static Scheduler scheduler() {
+        return new Scheduler(null, null, null, null, null, null, null, null);
+    }
+
+    /**
+     * The Thread of the program is the current thread while its run method
+     * runs, and the thread running the test is still itself.
+     */
+    public void testCurrentThread() throws Exception {
+        final Scheduler sched = scheduler();
+        final Thread[] seen = new Thread[1];
+        final Thread child = new Thread() {
+            public void run() {
+                seen[0] = sched.currentThread();
+            }
+        };
+        final Thread runner = new Thread(child);
+        sched.start(child, runner);
+        runner.join();
+        assertSame("The current thread is not the Thread of the program.",
+                child, seen[0]);
+        assertSame("The current thread of the test changed.",
+                Thread.currentThread(), sched.currentThread());
+    }
+
+    /**
+     * isAlive, getState, interrupt and isInterrupted reach the thread that
+     * runs the Thread of the program, which itself never starts.
+     */
+    public void testRunnerState() throws Exception {
+        final Scheduler sched = scheduler();
+        final CountDownLatch started = new CountDownLatch(1);
+        final boolean[] interrupted = new boolean[1];
+        final Thread child = new Thread() {
+            public void run() {
+                started.countDown();
+                try {
+                    Thread.sleep(60000);
+                } catch (InterruptedException e) {
+                    interrupted[0] = true;
+                }
+            }
+        };
+        final Thread runner = new Thread(child);
+        assertSame("A Thread that was not started runs elsewhere.", child,
+                sched.getRunner(child));
+        sched.start(child, runner);
+        started.await();
+        assertFalse("The Thread of the program was started.", child.isAlive());
+        assertSame("The Thread of the program has the wrong runner.", runner,
+                sched.getRunner(child));
+        assertTrue("The runner is not alive.", sched.getRunner(child).isAlive());
+        sched.getRunner(child).interrupt();
+        runner.join();
+        assertTrue("The interrupt did not reach the runner.", interrupted[0]);
+        assertEquals("The runner did not end.", Thread.State.TERMINATED,
+                sched.getRunner(child).getState());
+    }
+}
@@ -0,0 +1,50 @@
+package cute.dcute;
+
+import cute.Explorer;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Regression test for the exploration of the receive orders of actors.
+ */
+public class DScheduleTest extends TestCase {
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public DScheduleTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(DScheduleTest.class);
+    }
+
+    /**
+     * Only racing receives at the server are reordered, so each of the six
+     * orders of the requests is reached by exactly one execution, where
+     * reordering all the deliveries (-a) takes 90.
+     */
+    public void testEveryReceiveOrderOnce() throws Exception {
+        final List outcomes = new Explorer(ServerClients.class.getName(), "",
+                "ORDER ").explore(200);
+        assertEquals("Incorrect number of executions.", 6, outcomes.size());
+        final Set orders = new HashSet(outcomes);
+        final String[] expected = {
+                "abc a1 b2 c3", "acb a1 b3 c2", "bac a2 b1 c3",
+                "bca a3 b1 c2", "cab a2 b3 c1", "cba a3 b2 c1"};
+        for (int i = 0; i < expected.length; i++) {
+            assertTrue("Receive order " + expected[i] + " was not reached.",
+                    orders.contains(expected[i]));
+        }
+    }
+}
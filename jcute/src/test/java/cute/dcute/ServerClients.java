@@ -0,0 +1,69 @@
+package cute.dcute;
+
+import cute.concolic.Call;
+import cute.concolic.Globals;
+
+/**
+ * Three clients send a request to a server, which answers each with the
+ * number of requests it received so far. Prints the order in which the
+ * server received the requests and the answer of each client.
+ */
+public class ServerClients {
+    static String server = "";
+    static String answers = "";
+
+    static class Request extends Message {
+        Actor from;
+
+        Request(Actor from) {
+            this.from = from;
+        }
+    }
+
+    static class Answer extends Message {
+        int n;
+
+        Answer(int n) {
+            this.n = n;
+        }
+    }
+
+    static class Server extends Actor {
+        int n = 0;
+
+        public void receive(Message m) {
+            Client c = (Client) ((Request) m).from;
+            server += c.name;
+            send(c, new Answer(++n));
+        }
+    }
+
+    static class Client extends Actor {
+        String name;
+        int answer;
+
+        Client(String name) {
+            this.name = name;
+        }
+
+        public void receive(Message m) {
+            answer = ((Answer) m).n;
+        }
+    }
+
+    public static void main(String[] args) {
+        cute.instrument.SymbolTable.session = new cute.instrument.SymbolTable();
+        Globals.globals.begin();
+        Server s = new Server();
+        Client[] cs = {new Client("a"), new Client("b"), new Client("c")};
+        for (int i = 0; i < cs.length; i++) {
+            cs[i].send(s, new Request(cs[i]));
+        }
+        DScheduler.sched.start();
+        for (int i = 0; i < cs.length; i++) {
+            answers += " " + cs[i].name + cs[i].answer;
+        }
+        System.out.println("ORDER " + server + answers);
+        Call.endBefore(-1);
+    }
+}
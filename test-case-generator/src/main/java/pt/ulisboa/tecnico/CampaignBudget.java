@@ -0,0 +1,107 @@
+package pt.ulisboa.tecnico;
+
+import cute.concolic.logging.BranchCoverageLog;
+
+/**
+ * Splits a global wall-clock budget among the methods under test.
+ * <p/>
+ * Each method is given an equal share of the time that is still left when it
+ * starts. A method stops as soon as its coverage has not grown for a given
+ * number of iterations, and the time it did not use is shared among the
+ * methods that follow, which still have a chance of gaining coverage.
+ */
+public class CampaignBudget {
+    private final long campaignDeadline;
+    private final int plateauIterations;
+    private int methodsLeft;
+    private long methodDeadline;
+
+    /**
+     * @param budgetMillis      the wall-clock budget of the whole campaign.
+     * @param methods           the number of methods under test.
+     * @param plateauIterations the number of iterations without coverage
+     *                          increase after which a method is stopped, or 0
+     *                          to never stop a method for that reason.
+     */
+    public CampaignBudget(long budgetMillis, int methods,
+                          int plateauIterations) {
+        this(System.currentTimeMillis(), budgetMillis, methods,
+                plateauIterations);
+    }
+
+    CampaignBudget(long now, long budgetMillis, int methods,
+                   int plateauIterations) {
+        this.campaignDeadline = now + budgetMillis;
+        this.methodsLeft = methods;
+        this.plateauIterations = plateauIterations;
+        this.methodDeadline = now;
+    }
+
+    /**
+     * Allots the next method its share of the remaining campaign time.
+     */
+    public void startMethod() {
+        startMethod(System.currentTimeMillis());
+    }
+
+    void startMethod(long now) {
+        final long remaining = Math.max(0, campaignDeadline - now);
+        methodDeadline = now + remaining / Math.max(1, methodsLeft);
+    }
+
+    /**
+     * Marks the current method as done, so that the time it did not use
+     * goes to the remaining methods.
+     */
+    public void endMethod() {
+        if (methodsLeft > 0) {
+            methodsLeft--;
+        }
+    }
+
+    /**
+     * Marks n methods as done without running them, as when their main
+     * classes do not compile or the campaign aborts, so that their time goes
+     * to the remaining methods.
+     *
+     * @param n the number of methods skipped.
+     */
+    public void skipMethods(int n) {
+        methodsLeft = Math.max(0, methodsLeft - n);
+    }
+
+    /**
+     * @return true, if the current method may run one more iteration.
+     * Otherwise, false.
+     */
+    public boolean hasTime() {
+        return hasTime(System.currentTimeMillis());
+    }
+
+    boolean hasTime(long now) {
+        return now < methodDeadline;
+    }
+
+    /**
+     * Checks whether the coverage of the current method stopped growing.
+     *
+     * @param coverage the coverage log of the current method, may be null.
+     * @return true, if no new branch was covered in the last
+     * plateauIterations iterations. Otherwise, false.
+     */
+    public boolean isPlateaued(BranchCoverageLog coverage) {
+        if (plateauIterations <= 0 || coverage == null) {
+            return false;
+        }
+        return isPlateaued(coverage.getIterations(), coverage.getLastAt());
+    }
+
+    boolean isPlateaued(long iterations, long lastIncreasedAt) {
+        return plateauIterations > 0
+                && iterations - lastIncreasedAt >= plateauIterations;
+    }
+
+    public int getMethodsLeft() {
+        return methodsLeft;
+    }
+}
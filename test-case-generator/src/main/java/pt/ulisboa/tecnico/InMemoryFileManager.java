@@ -0,0 +1,121 @@
+package pt.ulisboa.tecnico;
+
+import javax.tools.*;
+import java.io.*;
+import java.net.URI;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * A JavaFileManager that compiles generated sources from memory and keeps
+ * the compiled classes in memory, instead of going through
+ * generated-sources and classes on disk.
+ * <p/>
+ * The classes are handed to another process as a jar stream with writeJar,
+ * e.g. to the instrumenter through its standard input. They are only written
+ * to disk with writeClasses when the other process must find them on its
+ * class path.
+ */
+public class InMemoryFileManager extends
+        ForwardingJavaFileManager<StandardJavaFileManager> {
+    private final Map<String, ByteArrayOutputStream> classes =
+            new TreeMap<String, ByteArrayOutputStream>();
+
+    public InMemoryFileManager(StandardJavaFileManager fileManager) {
+        super(fileManager);
+    }
+
+    /**
+     * @param mainClass the MainClass to compile.
+     * @return a source file object holding the code of mainClass.
+     */
+    public static JavaFileObject getJavaFileObject(final MainClass mainClass) {
+        final URI uri = URI.create("string:///" + mainClass
+                .getFullyQualifiedName().replace('.', '/')
+                + JavaFileObject.Kind.SOURCE.extension);
+        return new SimpleJavaFileObject(uri, JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return mainClass.getJavaFile();
+            }
+        };
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(Location location,
+                                               final String className,
+                                               JavaFileObject.Kind kind,
+                                               FileObject sibling)
+            throws IOException {
+        if (kind != JavaFileObject.Kind.CLASS) {
+            return super.getJavaFileForOutput(location, className, kind,
+                    sibling);
+        }
+        final URI uri = URI.create("bytes:///" + className.replace('.', '/')
+                + kind.extension);
+        return new SimpleJavaFileObject(uri, kind) {
+            @Override
+            public OutputStream openOutputStream() {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                classes.put(className, out);
+                return out;
+            }
+        };
+    }
+
+    /**
+     * @param className the binary name of a compiled class.
+     * @return the bytecode of className, or null, if it was not compiled.
+     */
+    public byte[] getClassBytes(String className) {
+        final ByteArrayOutputStream out = classes.get(className);
+        return out == null ? null : out.toByteArray();
+    }
+
+    /**
+     * Writes the compiled classes to out as a jar, closes out, and forgets
+     * the classes.
+     *
+     * @param out the stream to write the jar to.
+     * @throws IOException if the jar could not be written.
+     */
+    public void writeJar(OutputStream out) throws IOException {
+        final JarOutputStream jar = new JarOutputStream(out);
+        try {
+            for (Map.Entry<String, ByteArrayOutputStream> e
+                    : classes.entrySet()) {
+                jar.putNextEntry(new JarEntry(e.getKey().replace('.', '/')
+                        + JavaFileObject.Kind.CLASS.extension));
+                e.getValue().writeTo(jar);
+                jar.closeEntry();
+            }
+        } finally {
+            jar.close();
+        }
+        classes.clear();
+    }
+
+    /**
+     * Writes the compiled classes to dir, in the directories of their
+     * packages, and forgets them.
+     *
+     * @param dir the root directory of the classes.
+     * @throws IOException if a class could not be written.
+     */
+    public void writeClasses(File dir) throws IOException {
+        for (Map.Entry<String, ByteArrayOutputStream> e : classes.entrySet()) {
+            final File f = new File(dir, e.getKey().replace('.',
+                    File.separatorChar) + JavaFileObject.Kind.CLASS.extension);
+            f.getParentFile().mkdirs();
+            final OutputStream out = new FileOutputStream(f);
+            try {
+                e.getValue().writeTo(out);
+            } finally {
+                out.close();
+            }
+        }
+        classes.clear();
+    }
+}
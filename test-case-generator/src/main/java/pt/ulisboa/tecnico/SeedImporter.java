@@ -0,0 +1,200 @@
+package pt.ulisboa.tecnico;
+
+import cute.concolic.Globals;
+import cute.concolic.input.Dumbo;
+import cute.concolic.input.InputElement;
+import cute.concolic.input.InputMap;
+import cute.concolic.logging.JUnitTestGenerator;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Imports seed inputs for a method under test from a previous campaign.
+ * Seeds are read from the JUnit test cases generated by
+ * JUnitTestGenerator, and from stored input files (in the format of the
+ * CUTE inputs file) named after the generated main class and ending in
+ * ".inputs".
+ * <p/>
+ * Only the inputs passed through cute.Cute.input are recovered. Fields of
+ * object inputs are left for CUTE to initialize.
+ */
+public class SeedImporter {
+    private static final String INPUT_PREFIX = "input[i++] = ";
+    private final Map<String, Integer> boxedTypes;
+
+    public SeedImporter() {
+        boxedTypes = new TreeMap<String, Integer>();
+        boxedTypes.put("Integer", Globals.INT);
+        boxedTypes.put("Short", Globals.SHORT);
+        boxedTypes.put("Long", Globals.LONG);
+        boxedTypes.put("Byte", Globals.BYTE);
+        boxedTypes.put("Character", Globals.CHAR);
+        boxedTypes.put("Float", Globals.FLOAT);
+        boxedTypes.put("Double", Globals.DOUBLE);
+        boxedTypes.put("Boolean", Globals.BOOLEAN);
+    }
+
+    /**
+     * Collects the seed files for mainClass found in seedDir. Seeds taken
+     * from JUnit test cases are written to new files in workDir.
+     *
+     * @param seedDir   the directory with the test cases and stored inputs.
+     * @param workDir   the directory to write the converted seeds to.
+     * @param mainClass the MainClass to seed.
+     * @return the seed files, to be given to CUTE with -e.
+     * @throws IOException if a seed could not be read or written.
+     */
+    public List<File> importSeeds(File seedDir, File workDir,
+                                  MainClass mainClass) throws IOException {
+        final List<File> seeds = new ArrayList<File>();
+        final String name = mainClass.getFullyQualifiedName();
+        final File junitFile = JUnitTestGenerator.getJUnitFileName(
+                seedDir.getPath(), name);
+        if (junitFile != null && junitFile.exists()) {
+            int k = 0;
+            for (InputElement head : readJUnitTestCase(junitFile)) {
+                final File seed = new File(workDir, "cuteSeedInputs" + k++);
+                writeSeed(head, seed);
+                seeds.add(seed);
+            }
+        }
+        final File[] stored = seedDir.listFiles();
+        if (stored != null) {
+            Arrays.sort(stored);
+            for (File f : stored) {
+                if (f.getName().startsWith(name + ".")
+                        && f.getName().endsWith(".inputs")) {
+                    seeds.add(f);
+                }
+            }
+        }
+        return seeds;
+    }
+
+    /**
+     * Reads the inputs of each test case in a JUnit file generated by
+     * JUnitTestGenerator.
+     *
+     * @param f the JUnit file.
+     * @return the first input of each test case, in order.
+     * @throws IOException if f could not be read.
+     */
+    public List<InputElement> readJUnitTestCase(File f) throws IOException {
+        final BufferedReader in = new BufferedReader(new FileReader(f));
+        try {
+            return readJUnitTestCase(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    List<InputElement> readJUnitTestCase(BufferedReader in) throws IOException {
+        final List<InputElement> result = new ArrayList<InputElement>();
+        InputElement head = null, last = null;
+        boolean inTest = false;
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.startsWith("public void test")) {
+                inTest = true;
+                head = last = null;
+            } else if (inTest && line.startsWith("cute.Cute.input = this;")) {
+                inTest = false;
+                if (head != null) {
+                    result.add(head);
+                }
+            } else if (inTest && line.startsWith(INPUT_PREFIX)) {
+                final InputElement elt = parseInput(line.substring(
+                        INPUT_PREFIX.length(), line.length() - 1).trim());
+                if (elt == null) {
+                    // unknown input: the remaining inputs would be misaligned.
+                    inTest = false;
+                    if (head != null) {
+                        result.add(head);
+                    }
+                } else if (head == null) {
+                    head = last = elt;
+                } else {
+                    last.next = elt;
+                    last = elt;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the inputs starting at head to f, in the format of the CUTE
+     * inputs file.
+     *
+     * @param head the first input.
+     * @param f    the file to write to.
+     * @throws IOException if f could not be written.
+     */
+    public void writeSeed(InputElement head, File f) throws IOException {
+        final ObjectOutputStream out = new ObjectOutputStream(
+                new BufferedOutputStream(new FileOutputStream(f)));
+        try {
+            InputMap.writeInputs(out, head);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Parses the right hand side of an input assignment, e.g. "new
+     * Integer(5)", "null" or "tmp1".
+     *
+     * @param value the right hand side.
+     * @return the parsed input, or null, if value is not recognized.
+     */
+    private InputElement parseInput(String value) {
+        if (value.equals("null")) {
+            return new InputElement(null, null, Globals.REFERENCE, 0);
+        }
+        if (!value.startsWith("new ")) {
+            // an object built by the test case: let CUTE create a new one.
+            return new InputElement(Dumbo.val, null, Globals.REFERENCE, 0);
+        }
+        final int open = value.indexOf('('), close = value.lastIndexOf(')');
+        if (open < 0 || close < open) {
+            return null;
+        }
+        final Integer type = boxedTypes.get(value.substring(4, open).trim());
+        if (type == null) {
+            return null;
+        }
+        final String v = value.substring(open + 1, close);
+        try {
+            return new InputElement(parseValue(type, v), null, type, 0);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Object parseValue(int type, String v) {
+        switch (type) {
+            case Globals.INT:
+                return Integer.valueOf(v);
+            case Globals.SHORT:
+                return Short.valueOf(v);
+            case Globals.LONG:
+                return Long.valueOf(v);
+            case Globals.BYTE:
+                return Byte.valueOf(v);
+            case Globals.CHAR:
+                return v.length() == 0 ? (char) 0 : v.charAt(0);
+            case Globals.FLOAT:
+                return Float.valueOf(v);
+            case Globals.DOUBLE:
+                return Double.valueOf(v);
+            default:
+                return Boolean.valueOf(v);
+        }
+    }
+}
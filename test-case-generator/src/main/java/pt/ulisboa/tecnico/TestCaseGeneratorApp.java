@@ -10,6 +10,9 @@ import javax.tools.*;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
 
 /**
  * Main entry for generating test cases.
@@ -22,6 +25,18 @@ public class TestCaseGeneratorApp {
     private String covLogDestFolder = "cov-log";
     private InteractiveMode interactiveMode = new NullInteractiveMode();
     private int concolicIterations = 10;
+    private boolean concolicIterationsGiven = false;
+    private long timeBudget = 0;
+    private int plateauIterations = 0;
+    private int hybridPlateauIterations = 0;
+    private boolean concretePhase = false;
+    private long escalatedAt = 0;
+    private String seedDir = null;
+    private String agentJar = null;
+    private boolean inMemory = false;
+    private boolean keepSources = false;
+    private InMemoryFileManager compiledClasses = null;
+    private final LinkedList<File> seeds = new LinkedList<File>();
     private boolean resetSearch = true;
     private int concolicIteration = 0;
 
@@ -50,9 +65,65 @@ public class TestCaseGeneratorApp {
     }
 
     public int getConcolicIterations() {
+        if (timeBudget > 0 && !concolicIterationsGiven) {
+            return Integer.MAX_VALUE;
+        }
         return concolicIterations;
     }
 
+    /**
+     * @return the wall-clock budget of the campaign in milliseconds, or 0, if
+     * the campaign is only bounded by the number of iterations.
+     */
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    public int getPlateauIterations() {
+        return plateauIterations;
+    }
+
+    /**
+     * @return the number of random runs without coverage increase after which
+     * a hybrid execution switches to concolic execution, or 0, if every run is
+     * concolic.
+     */
+    public int getHybridPlateauIterations() {
+        return hybridPlateauIterations;
+    }
+
+    /**
+     * @return true, if the current method is in the random phase of a hybrid
+     * execution. Otherwise, false.
+     */
+    public boolean isConcretePhase() {
+        return concretePhase;
+    }
+
+    /**
+     * @return the directory with the test cases and inputs of a previous
+     * campaign, or null, if the methods are not seeded.
+     */
+    public String getSeedDir() {
+        return seedDir;
+    }
+
+    /**
+     * @return true, if there are seeds left to execute for the current
+     * method. Otherwise, false.
+     */
+    public boolean hasSeeds() {
+        return !seeds.isEmpty();
+    }
+
+    /**
+     * @return the jar with CuteAgent, if the classes are instrumented as they
+     * are loaded. Otherwise, null.
+     */
+    public String getAgentJar() {
+        return agentJar;
+    }
+
     public InteractiveMode getInteractiveMode() {
         return interactiveMode;
     }
@@ -60,6 +131,8 @@ public class TestCaseGeneratorApp {
     public void resetConcolicExecution() {
         resetSearch = true;
         concolicIteration = 0;
+        concretePhase = hybridPlateauIterations > 0;
+        escalatedAt = 0;
     }
 
     /**
@@ -79,6 +152,8 @@ public class TestCaseGeneratorApp {
         final StandardJavaFileManager fileManager = compiler
                 .getStandardFileManager(diagnostics, null, null);
         final MainGenerator mainGenerator = new MainGenerator();
+        final List<MainClass[]> classesUnderTest = new ArrayList<MainClass[]>();
+        int methods = 0;
         for (int i = index; i < args.length; i++) {
             final String fullyQualifiedName = args[i];
             final MainClass[] mainClasses;
@@ -88,24 +163,70 @@ public class TestCaseGeneratorApp {
                 e.printStackTrace();
                 break;
             }
+            classesUnderTest.add(mainClasses);
+            methods += mainClasses.length;
+        }
+        final CampaignBudget budget = app.getTimeBudget() > 0
+                || app.getPlateauIterations() > 0
+                ? new CampaignBudget(app.getTimeBudget() > 0
+                ? app.getTimeBudget() : Long.MAX_VALUE / 2, methods,
+                app.getPlateauIterations())
+                : null;
+        for (MainClass[] mainClasses : classesUnderTest) {
+            final boolean compiled = app.compileMainClasses(compiler,
+                    diagnostics, fileManager, mainClasses);
+            if (!compiled) {
+                if (budget != null) {
+                    budget.skipMethods(mainClasses.length);
+                }
+                continue;
+            }
+            if (app.getAgentJar() == null) {
+                app.instrumentMains(mainClasses);
+            }
+            int started = 0;
             mainClass:
             for (MainClass mainClass : mainClasses) {
-                final boolean compiled = app.compileMainClass(compiler,
-                        diagnostics, fileManager, mainClass);
-                if (!compiled) {
-                    break;
-                }
-                app.instrumentMain(mainClass);
+                started++;
                 app.resetConcolicExecution();
+                app.importSeeds(mainClass);
+                if (budget != null) {
+                    budget.startMethod();
+                }
                 for (int j = 0; j < app.getConcolicIterations(); j++) {
+                    if (budget != null && !budget.hasTime()) {
+                        break;
+                    }
                     final int exit = app.runMain(mainClass);
                     if (exit == -1) {
+                        if (budget != null) {
+                            // the aborted method and the ones not started
+                            budget.skipMethods(mainClasses.length - started + 1);
+                        }
                         break mainClass;
                     }
                     app.generateJUnitTestCase(mainClass, exit);
-                    if (app.isExitState(exit, Cute.EXIT_COMPLETE)) {
+                    if (app.isExitState(exit, Cute.EXIT_COMPLETE)
+                            && !app.hasSeeds()) {
                         break;
                     }
+                    if (budget == null && !app.isConcretePhase()) {
+                        continue;
+                    }
+                    final BranchCoverageLog coverage = BranchCoverageLog
+                            .readCoverageLog(new File("."));
+                    if (coverage == null) {
+                        continue;
+                    }
+                    if (app.isConcretePhase()) {
+                        app.escalateOnPlateau(coverage);
+                    } else if (budget.isPlateaued(coverage.getIterations(),
+                            app.getLastIncreasedAt(coverage))) {
+                        break;
+                    }
+                }
+                if (budget != null) {
+                    budget.endMethod();
                 }
                 app.printCoverageLog(mainClass);
                 app.getInteractiveMode().methodConcolicallyExecuted();
@@ -133,6 +254,13 @@ public class TestCaseGeneratorApp {
                         " -main-instrument-d <directory for the instrumented main classes>\n" +
                         " -test-cases-d <directory for the generated test cases>\n" +
                         " -i <concolic iterations per class>\n" +
+                        " -time-budget <seconds for the whole campaign, shared among the methods>\n" +
+                        " -plateau <iterations without coverage increase before moving on to the next method>\n" +
+                        " -seeds <directory with the test cases and .inputs files of a previous campaign>\n" +
+                        " -hybrid <random runs without coverage increase before switching to concolic execution>\n" +
+                        " -agent <jar with cute.instrument.CuteAgent, to instrument classes as they are loaded>\n" +
+                        " -in-memory (compile the generated mains in memory)\n" +
+                        " -keep-sources (with -in-memory, still write the generated mains to disk)\n" +
                         " <fully qualified name of class> (1 or more class names)\n");
                 return -1;
             } else if (args[i].equals("-main-generate-d")) {
@@ -175,6 +303,10 @@ public class TestCaseGeneratorApp {
                 } else {
                     covLogDestFolder = args[++i];
                 }
+            } else if (args[i].equals("-in-memory")) {
+                inMemory = true;
+            } else if (args[i].equals("-keep-sources")) {
+                keepSources = true;
             } else if (args[i].equals("-interactive")) {
                 interactiveMode = new InteractiveModeImpl();
             } else if (args[i].equals("-i")) {
@@ -184,6 +316,47 @@ public class TestCaseGeneratorApp {
                     return -1;
                 } else {
                     concolicIterations = Integer.parseInt(args[++i]);
+                    concolicIterationsGiven = true;
+                }
+            } else if (args[i].equals("-time-budget")) {
+                if (i + 1 >= args.length) {
+                    System.err.println("No time budget was specified " +
+                            "after -time-budget.");
+                    return -1;
+                } else {
+                    timeBudget = Long.parseLong(args[++i]) * 1000;
+                }
+            } else if (args[i].equals("-plateau")) {
+                if (i + 1 >= args.length) {
+                    System.err.println("No iteration value was specified " +
+                            "after -plateau.");
+                    return -1;
+                } else {
+                    plateauIterations = Integer.parseInt(args[++i]);
+                }
+            } else if (args[i].equals("-seeds")) {
+                if (i + 1 >= args.length) {
+                    System.err.println("No seed folder was specified " +
+                            "after -seeds.");
+                    return -1;
+                } else {
+                    seedDir = args[++i];
+                }
+            } else if (args[i].equals("-hybrid")) {
+                if (i + 1 >= args.length) {
+                    System.err.println("No iteration value was specified " +
+                            "after -hybrid.");
+                    return -1;
+                } else {
+                    hybridPlateauIterations = Integer.parseInt(args[++i]);
+                }
+            } else if (args[i].equals("-agent")) {
+                if (i + 1 >= args.length) {
+                    System.err.println("No agent jar was specified " +
+                            "after -agent.");
+                    return -1;
+                } else {
+                    agentJar = args[++i];
                 }
             } else {
                 return i;
@@ -193,37 +366,63 @@ public class TestCaseGeneratorApp {
     }
 
     /**
-     * Writes mainClass to a .java file, and compiles it to a .class file.
+     * Writes each of mainClasses to a .java file, and compiles them all to
+     * .class files in one compilation task. With -in-memory, the sources are
+     * compiled from memory, and the classes are kept in memory until they are
+     * instrumented. Only with -agent, the classes are written to disk, where
+     * the runs of the mains load them from.
      *
      * @param compiler    the JavaCompiler.
      * @param diagnostics the DiagnosticCollector.
      * @param fileManager the JavaFileManager.
-     * @param mainClass   the MainClass to compile.
-     * @return true, if mainClass was compiled. Otherwise, false.
+     * @param mainClasses the MainClasses to compile.
+     * @return true, if mainClasses were compiled. Otherwise, false.
      * @throws IOException
      */
-    private boolean compileMainClass(
+    private boolean compileMainClasses(
             JavaCompiler compiler,
             DiagnosticCollector<JavaFileObject> diagnostics,
             StandardJavaFileManager fileManager,
-            MainClass mainClass) throws IOException {
-        final File dir = new File(getMainGenDestFolder(), mainClass
-                .getDirectoryName());
-        dir.mkdirs();
-        final File f = new File(dir, mainClass.getFileName());
-        final BufferedWriter writer = new BufferedWriter(new FileWriter(f));
-        writer.write(mainClass.getJavaFile().toString());
-        writer.close();
+            MainClass[] mainClasses) throws IOException {
+        if (mainClasses.length == 0) {
+            return true;
+        }
+        final List<File> files = new ArrayList<File>();
+        final List<JavaFileObject> sources = new ArrayList<JavaFileObject>();
+        for (MainClass mainClass : mainClasses) {
+            if (inMemory) {
+                sources.add(InMemoryFileManager.getJavaFileObject(mainClass));
+                if (!keepSources) {
+                    continue;
+                }
+            }
+            final File dir = new File(getMainGenDestFolder(), mainClass
+                    .getDirectoryName());
+            dir.mkdirs();
+            final File f = new File(dir, mainClass.getFileName());
+            final BufferedWriter writer = new BufferedWriter(new FileWriter(f));
+            writer.write(mainClass.getJavaFile().toString());
+            writer.close();
+            files.add(f);
+        }
         final Collection<String> options = new ArrayList<String>();
         options.add("-classpath");
         options.add(getClasspath());
         options.add("-d");
         options.add(getMainCompileDestFolder());
-        final Iterable<? extends JavaFileObject> compilationUnits = fileManager
-                .getJavaFileObjects(f);
-        final boolean compiled = compiler.getTask(null, fileManager,
-                diagnostics, options, null, compilationUnits).call();
+        final InMemoryFileManager memory = inMemory
+                ? new InMemoryFileManager(fileManager) : null;
+        final Iterable<? extends JavaFileObject> compilationUnits = inMemory
+                ? sources : fileManager.getJavaFileObjectsFromFiles(files);
+        final boolean compiled = compiler.getTask(null, inMemory ? memory
+                : fileManager, diagnostics, options, null, compilationUnits)
+                .call();
         if (compiled) {
+            if (inMemory && agentJar != null) {
+                memory.writeClasses(new File(getMainCompileDestFolder()));
+            } else if (inMemory) {
+                compiledClasses = memory;
+            }
             return true;
         } else {
             System.err.println("The generated class has errors. Something " +
@@ -236,20 +435,36 @@ public class TestCaseGeneratorApp {
     }
 
     /**
-     * Instruments mainClass in a different process using CuteInstrumenter.
+     * Instruments mainClasses in a different process using CuteInstrumenter,
+     * in one Soot run that writes one jar and one symbol table for all of
+     * them. Classes compiled in memory are passed to the instrumenter as a
+     * jar on its standard input.
      *
-     * @param mainClass the MainClass to instrument.
+     * @param mainClasses the MainClasses to instrument.
      */
-    private void instrumentMain(MainClass mainClass) throws IOException {
-        final ProcessBuilder pb = new ProcessBuilder("java",
+    private void instrumentMains(MainClass[] mainClasses) throws IOException {
+        if (mainClasses.length == 0) {
+            return;
+        }
+        final List<String> command = new ArrayList<String>();
+        Collections.addAll(command, "java",
                 "-cp", getClasspath(),
                 "-Dcute.sequential=" + System.getProperty("cute.sequential"),
+                "-Dcute.taint=" + System.getProperty("cute.taint"),
+                "-Dcute.compact=" + System.getProperty("cute.compact"),
+                "-Dcute.lazy=" + System.getProperty("cute.lazy"),
+                "-Dcute.virtual=" + System.getProperty("cute.virtual"),
+                "-Dcute.classes=" + (compiledClasses != null ? "-" : ""),
                 "cute.instrument.CuteInstrumenter",
                 "-keep-line-number",
                 "-d", getMainInstrDestJar(),
                 "-outjar",
                 "-x", "cute", "-x", "lpsolve",
-                "--app", mainClass.getFullyQualifiedName());
+                "--app");
+        for (MainClass mainClass : mainClasses) {
+            command.add(mainClass.getFullyQualifiedName());
+        }
+        final ProcessBuilder pb = new ProcessBuilder(command);
         final Process process = pb.start();
         final Thread input, error;
         (input = new Thread(new Runnable() {
@@ -283,6 +498,10 @@ public class TestCaseGeneratorApp {
                 }
             }
         })).start();
+        if (compiledClasses != null) {
+            compiledClasses.writeJar(process.getOutputStream());
+            compiledClasses = null;
+        }
         try {
             input.join();
             error.join();
@@ -292,6 +511,20 @@ public class TestCaseGeneratorApp {
         }
     }
 
+    /**
+     * Queues the seeds of a previous campaign for mainClass, so that they are
+     * executed before any new input is generated.
+     *
+     * @param mainClass the MainClass to seed.
+     */
+    private void importSeeds(MainClass mainClass) throws IOException {
+        seeds.clear();
+        if (seedDir != null) {
+            seeds.addAll(new SeedImporter().importSeeds(new File(seedDir),
+                    new File("."), mainClass));
+        }
+    }
+
     /**
      * Calls the instrumented mainClass in a different process.
      *
@@ -301,12 +534,38 @@ public class TestCaseGeneratorApp {
      */
     private int runMain(MainClass mainClass) throws IOException {
         int exit;
-        final ProcessBuilder pb = new ProcessBuilder("java",
-                "-classpath", getMainInstrDestJar() + ":" + getClasspath(),
-                "-Djava.library.path=" + System.getProperty("java.library.path"),
-                "-Dcute.args=" + System.getProperty("cute.args") + (resetSearch
-                        ? ":-m:2" : ""),
-                mainClass.getFullyQualifiedName());
+        final File seed = seeds.poll();
+        final List<String> command = new ArrayList<String>();
+        command.add("java");
+        if (agentJar != null) {
+            command.add("-javaagent:" + agentJar + "="
+                    + mainClass.getFullyQualifiedName());
+            command.add("-Dcute.sequential="
+                    + System.getProperty("cute.sequential"));
+            command.add("-Dcute.taint=" + System.getProperty("cute.taint"));
+            command.add("-Dcute.compact=" + System.getProperty("cute.compact"));
+            command.add("-Dcute.lazy=" + System.getProperty("cute.lazy"));
+            command.add("-Dcute.virtual=" + System.getProperty("cute.virtual"));
+            if (System.getProperty("cute.cache") != null) {
+                command.add("-Dcute.cache=" + System.getProperty("cute.cache"));
+            }
+            command.add("-classpath");
+            command.add(getClasspath());
+        } else {
+            command.add("-classpath");
+            command.add(getMainInstrDestJar() + ":" + getClasspath());
+        }
+        command.add("-Djava.library.path="
+                + System.getProperty("java.library.path"));
+        if (seed != null) {
+            command.add("-Dcute.seed=" + seed.getPath());
+        }
+        command.add("-Dcute.args=" + System.getProperty("cute.args")
+                + ("true".equals(System.getProperty("cute.lazy")) ? ":-z" : "")
+                + (resetSearch ? ":-m:2" : "")
+                + (seed == null && concretePhase ? ":-c" : ""));
+        command.add(mainClass.getFullyQualifiedName());
+        final ProcessBuilder pb = new ProcessBuilder(command);
         final Process process = pb.start();
         final Thread input, error;
         (input = new Thread(new Runnable() {
@@ -353,6 +612,30 @@ public class TestCaseGeneratorApp {
         return exit;
     }
 
+    /**
+     * Switches from random to concolic execution, once the random runs of the
+     * current method stopped increasing coverage. The concolic execution
+     * starts from the inputs of the last random run that increased coverage.
+     *
+     * @param coverage the coverage log of the current method.
+     */
+    private void escalateOnPlateau(BranchCoverageLog coverage) {
+        if (coverage.getIterations() - coverage.getLastAt()
+                >= hybridPlateauIterations) {
+            concretePhase = false;
+            escalatedAt = coverage.getIterations();
+        }
+    }
+
+    /**
+     * @param coverage the coverage log of the current method.
+     * @return the iteration of the last coverage increase, where switching
+     * to concolic execution counts as an increase.
+     */
+    private long getLastIncreasedAt(BranchCoverageLog coverage) {
+        return Math.max(coverage.getLastAt(), escalatedAt);
+    }
+
     /**
      * Checks whether exit has the Cute state state.
      *
@@ -0,0 +1,80 @@
+package pt.ulisboa.tecnico;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for CampaignBudget.
+ */
+public class CampaignBudgetTest extends TestCase {
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public CampaignBudgetTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(CampaignBudgetTest.class);
+    }
+
+    /**
+     * Time left unused by a method goes to the methods that follow.
+     */
+    public void testUnusedTimeIsReassigned() {
+        final CampaignBudget budget = new CampaignBudget(0, 900, 3, 0);
+        budget.startMethod(0);
+        assertTrue("First method has no time.", budget.hasTime(299));
+        assertFalse("First method exceeds its share.", budget.hasTime(300));
+        budget.endMethod();
+        budget.startMethod(100);
+        assertTrue("Unused time was not reassigned.", budget.hasTime(499));
+        assertFalse("Second method exceeds its share.", budget.hasTime(500));
+        budget.endMethod();
+        budget.startMethod(500);
+        assertTrue("Last method has no time.", budget.hasTime(899));
+        assertFalse("Last method exceeds the campaign.", budget.hasTime(900));
+        budget.endMethod();
+        assertEquals("Incorrect methods left.", 0, budget.getMethodsLeft());
+    }
+
+    /**
+     * The time of skipped methods goes to the methods that are run.
+     */
+    public void testSkippedMethods() {
+        final CampaignBudget budget = new CampaignBudget(0, 900, 3, 0);
+        budget.skipMethods(2);
+        assertEquals("Incorrect methods left.", 1, budget.getMethodsLeft());
+        budget.startMethod(0);
+        assertTrue("Skipped time was not reassigned.", budget.hasTime(899));
+        budget.endMethod();
+        budget.skipMethods(1);
+        assertEquals("Methods left became negative.", 0,
+                budget.getMethodsLeft());
+    }
+
+    /**
+     * A method is stopped after plateauIterations iterations without
+     * coverage increase.
+     */
+    public void testPlateau() {
+        final CampaignBudget budget = new CampaignBudget(0, 900, 1, 5);
+        assertFalse("Coverage grew in the last iteration.",
+                budget.isPlateaued(7, 7));
+        assertFalse("Coverage grew four iterations ago.",
+                budget.isPlateaued(7, 3));
+        assertTrue("Coverage did not grow for five iterations.",
+                budget.isPlateaued(7, 2));
+        final CampaignBudget noPlateau = new CampaignBudget(0, 900, 1, 0);
+        assertFalse("Plateau detection is disabled.",
+                noPlateau.isPlateaued(100, 0));
+        assertFalse("Missing coverage log is not a plateau.",
+                budget.isPlateaued(null));
+    }
+}
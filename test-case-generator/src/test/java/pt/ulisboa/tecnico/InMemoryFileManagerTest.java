@@ -0,0 +1,107 @@
+package pt.ulisboa.tecnico;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import javax.tools.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+
+/**
+ * Unit test for InMemoryFileManager.
+ */
+public class InMemoryFileManagerTest extends TestCase {
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public InMemoryFileManagerTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(InMemoryFileManagerTest.class);
+    }
+
+    /**
+     * @return a file manager that holds the compiled class of a main.
+     */
+    private static InMemoryFileManager compile() {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final InMemoryFileManager fileManager = new InMemoryFileManager(
+                compiler.getStandardFileManager(null, null, null));
+        final MainClass mainClass = new MainClass(new StringBuilder(
+                "package samplePackageName;\n" +
+                        "public class jmlcute1 {\n" +
+                        "    public static void main(String[] args) {}\n" +
+                        "}\n"), "jmlcute1.java", "samplePackageName",
+                "samplePackageName.jmlcute1");
+        final boolean compiled = compiler.getTask(null, fileManager, null,
+                null, null, Arrays.asList(InMemoryFileManager
+                        .getJavaFileObject(mainClass))).call();
+        assertTrue("the main does not compile", compiled);
+        return fileManager;
+    }
+
+    /**
+     * Compiles a main from memory, and writes its class to disk.
+     */
+    public void testCompileInMemory() throws Exception {
+        final InMemoryFileManager fileManager = compile();
+        final byte[] bytes = fileManager.getClassBytes(
+                "samplePackageName.jmlcute1");
+        assertNotNull("the class is not kept in memory", bytes);
+        assertEquals("the class has no magic number", 0xCA, bytes[0] & 0xff);
+        assertEquals("the class has no magic number", 0xFE, bytes[1] & 0xff);
+
+        final File dir = new File(System.getProperty("java.io.tmpdir"),
+                "InMemoryFileManagerTest" + System.nanoTime());
+        fileManager.writeClasses(dir);
+        final File f = new File(dir, "samplePackageName" + File.separator
+                + "jmlcute1.class");
+        assertTrue("the class is not written to " + f, f.exists());
+        assertEquals("the written class differs", bytes.length, f.length());
+        assertNull("the written class is still kept in memory",
+                fileManager.getClassBytes("samplePackageName.jmlcute1"));
+        f.delete();
+        f.getParentFile().delete();
+        dir.delete();
+    }
+
+    /**
+     * Compiles a main from memory, and passes its class on as a jar stream.
+     */
+    public void testWriteJar() throws Exception {
+        final InMemoryFileManager fileManager = compile();
+        final byte[] bytes = fileManager.getClassBytes(
+                "samplePackageName.jmlcute1");
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        fileManager.writeJar(out);
+        final JarInputStream jar = new JarInputStream(
+                new ByteArrayInputStream(out.toByteArray()));
+        final JarEntry e = jar.getNextJarEntry();
+        assertNotNull("the jar is empty", e);
+        assertEquals("the class has the wrong entry",
+                "samplePackageName/jmlcute1.class", e.getName());
+        final ByteArrayOutputStream read = new ByteArrayOutputStream();
+        final byte[] buf = new byte[4096];
+        int n;
+        while ((n = jar.read(buf)) > 0) {
+            read.write(buf, 0, n);
+        }
+        assertTrue("the class in the jar differs",
+                Arrays.equals(bytes, read.toByteArray()));
+        assertNull("the jar has more than the class", jar.getNextJarEntry());
+        assertNull("the passed class is still kept in memory",
+                fileManager.getClassBytes("samplePackageName.jmlcute1"));
+    }
+}
@@ -0,0 +1,77 @@
+package pt.ulisboa.tecnico;
+
+import cute.concolic.Globals;
+import cute.concolic.input.Dumbo;
+import cute.concolic.input.InputElement;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+/**
+ * Unit test for SeedImporter.
+ */
+public class SeedImporterTest extends TestCase {
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public SeedImporterTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite() {
+        return new TestSuite(SeedImporterTest.class);
+    }
+
+    /**
+     * Reads the inputs of two test cases generated by JUnitTestGenerator.
+     */
+    public void testReadJUnitTestCase() throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("    public void test0(){\n");
+        sb.append("        i=0;\n");
+        sb.append("        input = new Object[3];\n");
+        sb.append("        samplePackageName.SampleClassName tmp1 = new samplePackageName.SampleClassName();\n");
+        sb.append("        input[i++] = tmp1;\n");
+        sb.append("        input[i++] = null;\n");
+        sb.append("        input[i++] = new Integer(-7);\n");
+        sb.append("        i=0;\n");
+        sb.append("        cute.Cute.input = this;\n");
+        sb.append("        samplePackageName.jmlcute1.main(null);\n");
+        sb.append("    }\n");
+        sb.append("    public void test1(){\n");
+        sb.append("        i=0;\n");
+        sb.append("        input = new Object[1];\n");
+        sb.append("        input[i++] = new Boolean(true);\n");
+        sb.append("        i=0;\n");
+        sb.append("        cute.Cute.input = this;\n");
+        sb.append("        samplePackageName.jmlcute1.main(null);\n");
+        sb.append("    }\n");
+        final List<InputElement> seeds = new SeedImporter().readJUnitTestCase(
+                new BufferedReader(new StringReader(sb.toString())));
+        assertEquals("Incorrect number of seeds.", 2, seeds.size());
+        final InputElement receiver = seeds.get(0);
+        assertEquals("Incorrect type.", Globals.REFERENCE, receiver.type);
+        assertSame("Receiver is not a new object.", Dumbo.val, receiver.val);
+        final InputElement arg0 = (InputElement) receiver.next;
+        assertEquals("Incorrect type.", Globals.REFERENCE, arg0.type);
+        assertNull("Argument is not null.", arg0.val);
+        final InputElement arg1 = (InputElement) arg0.next;
+        assertEquals("Incorrect type.", Globals.INT, arg1.type);
+        assertEquals("Incorrect value.", -7, arg1.val);
+        assertNull("Too many inputs.", arg1.next);
+        final InputElement b = seeds.get(1);
+        assertEquals("Incorrect type.", Globals.BOOLEAN, b.type);
+        assertEquals("Incorrect value.", Boolean.TRUE, b.val);
+        assertNull("Too many inputs.", b.next);
+    }
+}